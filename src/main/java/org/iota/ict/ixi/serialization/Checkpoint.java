@@ -0,0 +1,209 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.model.DataFragment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary checkpoint of the Persistence indexes, so that a restarted module does not have to rebuild them
+ * from the fragments stored in the Ict.
+ *
+ * File layout (trytes as ASCII): MAGIC, long creation time, int classCount, the ClassFragments (same fields
+ * as a {@link ClassRegistry} payload), then two sections: the referencing index and the class hash index.
+ * A section is an int key count followed, for each key, by the hash (81), an int posting count and the
+ * postings: [fragment head hash (81)][int reference index].
+ *
+ * Checkpoints are written to a temporary file, then moved over the previous one: a crash while writing
+ * leaves the previous checkpoint intact. DataFragments are restored from their head transaction in the Ict,
+ * fragments whose transactions are gone are skipped.
+ */
+class Checkpoint {
+
+    private static final byte[] MAGIC = "SERIXI-CHECKPOINT-1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HASH_LENGTH = 81;
+    private static final int NAME_LENGTH = ClassFragment.LENGTH_OF_CLASSNAME_FIELD;
+
+    interface Loader {
+
+        void onClassFragment(ClassFragment classFragment);
+
+        /**
+         * @return the DataFragment with head transaction headHash, or null when it cannot be restored
+         */
+        DataFragment resolve(String headHash);
+
+        void onReferencing(String referencedHash, List<DataFragment> fragments, int[] referenceIndexes);
+
+        void onClassInstances(String classHash, List<DataFragment> fragments);
+    }
+
+    static void write(File file, Collection<ClassFragment> classFragments, PostingStore.Snapshot referencing,
+                      PostingStore.Snapshot byClass) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.write(MAGIC);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(classFragments.size());
+            for (ClassFragment classFragment : classFragments) {
+                writeClassFragment(out, classFragment);
+            }
+            writeSection(out, referencing);
+            writeSection(out, byClass);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return false when there is no checkpoint to read
+     */
+    static boolean read(File file, Loader loader) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException(file + " is not a checkpoint");
+                }
+            }
+            in.readLong();
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                loader.onClassFragment(readClassFragment(in));
+            }
+            //a fragment appears in several postings: resolve it once
+            Map<String, DataFragment> resolved = new HashMap<>();
+            int keys = in.readInt();
+            for (int i = 0; i < keys; i++) {
+                String referencedHash = readTrytes(in, HASH_LENGTH);
+                int postingCount = in.readInt();
+                List<DataFragment> fragments = new ArrayList<>(postingCount);
+                int[] referenceIndexes = new int[postingCount];
+                for (int j = 0; j < postingCount; j++) {
+                    DataFragment fragment = resolve(loader, resolved, readTrytes(in, HASH_LENGTH));
+                    int referenceIndex = in.readInt();
+                    if (fragment != null) {
+                        referenceIndexes[fragments.size()] = referenceIndex;
+                        fragments.add(fragment);
+                    }
+                }
+                if (!fragments.isEmpty()) {
+                    loader.onReferencing(referencedHash, fragments, referenceIndexes);
+                }
+            }
+            keys = in.readInt();
+            for (int i = 0; i < keys; i++) {
+                String classHash = readTrytes(in, HASH_LENGTH);
+                int postingCount = in.readInt();
+                List<DataFragment> fragments = new ArrayList<>(postingCount);
+                for (int j = 0; j < postingCount; j++) {
+                    DataFragment fragment = resolve(loader, resolved, readTrytes(in, HASH_LENGTH));
+                    in.readInt();
+                    if (fragment != null) {
+                        fragments.add(fragment);
+                    }
+                }
+                if (!fragments.isEmpty()) {
+                    loader.onClassInstances(classHash, fragments);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static DataFragment resolve(Loader loader, Map<String, DataFragment> resolved, String headHash) {
+        if (resolved.containsKey(headHash)) {
+            return resolved.get(headHash);
+        }
+        DataFragment fragment = loader.resolve(headHash);
+        resolved.put(headHash, fragment);
+        return fragment;
+    }
+
+    private static void writeSection(DataOutputStream out, PostingStore.Snapshot snapshot) throws IOException {
+        out.writeInt(snapshot.size());
+        snapshot.visit(new PostingStore.Visitor() {
+            @Override
+            public void key(String hash, int postingCount) throws IOException {
+                writeTrytes(out, hash, HASH_LENGTH);
+                out.writeInt(postingCount);
+            }
+
+            @Override
+            public void posting(DataFragment fragment, int referenceIndex) throws IOException {
+                writeTrytes(out, fragment.getHeadTransactionHash(), HASH_LENGTH);
+                out.writeInt(referenceIndex);
+            }
+        });
+    }
+
+    private static void writeClassFragment(DataOutputStream out, ClassFragment classFragment) throws IOException {
+        writeTrytes(out, classFragment.getHeadTransactionHash(), HASH_LENGTH);
+        writeTrytes(out, classFragment.getClassHash(), HASH_LENGTH);
+        writeTrytes(out, classFragment.getClassName(), NAME_LENGTH);
+        out.writeInt(classFragment.getDataSize());
+        out.writeInt(classFragment.getRefCount());
+        out.writeInt(classFragment.getAttributeCount());
+        for (int i = 0; i < classFragment.getRefCount(); i++) {
+            writeTrytes(out, classFragment.getClassHashForReference(i), HASH_LENGTH);
+        }
+        for (int i = 0; i < classFragment.getAttributeCount(); i++) {
+            out.writeInt(classFragment.getAttributeLength(i));
+            writeTrytes(out, classFragment.getAttributeName(i), NAME_LENGTH);
+        }
+    }
+
+    private static ClassFragment readClassFragment(DataInputStream in) throws IOException {
+        String headHash = readTrytes(in, HASH_LENGTH);
+        String classHash = readTrytes(in, HASH_LENGTH);
+        String className = readTrytes(in, NAME_LENGTH);
+        int dataSize = in.readInt();
+        int refCount = in.readInt();
+        int attributeCount = in.readInt();
+        String[] references = new String[refCount];
+        for (int i = 0; i < refCount; i++) {
+            references[i] = readTrytes(in, HASH_LENGTH);
+        }
+        int[] attributesLength = new int[attributeCount];
+        String[] attributesName = new String[attributeCount];
+        for (int i = 0; i < attributeCount; i++) {
+            attributesLength[i] = in.readInt();
+            attributesName[i] = readTrytes(in, NAME_LENGTH);
+        }
+        return new ClassFragment(headHash, className, dataSize, attributesLength, attributesName, references, classHash);
+    }
+
+    private static void writeTrytes(DataOutputStream out, String trytes, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.write(i < trytes.length() ? trytes.charAt(i) : '9');
+        }
+    }
+
+    private static String readTrytes(DataInputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
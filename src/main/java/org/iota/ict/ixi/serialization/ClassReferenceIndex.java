@@ -0,0 +1,97 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index of class references: for each referenced classHash, the (referencing classHash, reference index)
+ * pairs. The entries of a class are removed with {@link #remove(ClassFragment)} once the class is evicted.
+ */
+class ClassReferenceIndex {
+
+    private final Map<TryteHash, Set<Reference>> byReferenced = new ConcurrentHashMap<>();
+
+    void add(ClassFragment classFragment) {
+        TryteHash classHash = classFragment.getClassTryteHash();
+        for (int i = 0; i < classFragment.getRefCount(); i++) {
+            add(classHash, i, classFragment.getClassTryteHashForReference(i));
+        }
+    }
+
+    /**
+     * Record that classHash references referenced at referenceIndex.
+     */
+    void add(TryteHash classHash, int referenceIndex, TryteHash referenced) {
+        if (!referenced.equals(TryteHash.NULL_HASH)) {
+            byReferenced.computeIfAbsent(referenced, k -> ConcurrentHashMap.newKeySet()).add(new Reference(classHash, referenceIndex));
+        }
+    }
+
+    void remove(ClassFragment classFragment) {
+        TryteHash classHash = classFragment.getClassTryteHash();
+        for (int i = 0; i < classFragment.getRefCount(); i++) {
+            TryteHash referenced = classFragment.getClassTryteHashForReference(i);
+            Reference reference = new Reference(classHash, i);
+            byReferenced.computeIfPresent(referenced, (k, references) -> {
+                references.remove(reference);
+                return references.isEmpty() ? null : references;
+            });
+        }
+    }
+
+    /**
+     * @param referenceIndex index of the reference to inspect, or a negative value for any reference
+     * @return the hashes of the classes referencing referencedClassHash
+     */
+    Set<TryteHash> referencing(TryteHash referencedClassHash, int referenceIndex) {
+        Set<Reference> references = byReferenced.get(referencedClassHash);
+        Set<TryteHash> ret = new HashSet<>();
+        if (references != null) {
+            for (Reference reference : references) {
+                if (referenceIndex < 0 || reference.index == referenceIndex) {
+                    ret.add(reference.classHash);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of referenced classHashes
+     */
+    int size() {
+        return byReferenced.size();
+    }
+
+    void clear() {
+        byReferenced.clear();
+    }
+
+    private static final class Reference {
+        private final TryteHash classHash;
+        private final int index;
+
+        Reference(TryteHash classHash, int index) {
+            this.classHash = classHash;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Reference)) return false;
+            Reference other = (Reference) o;
+            return index == other.index && classHash.equals(other.classHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return classHash.hashCode() * 31 + index;
+        }
+    }
+}
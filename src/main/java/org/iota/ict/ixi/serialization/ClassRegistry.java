@@ -0,0 +1,213 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only, memory-mapped file storing the metadata of the ClassFragments seen so far,
+ * so that classes survive restarts and the ring tangle dropping their transactions.
+ *
+ * Opening the registry only reads the classHash and the referenced classHashes of each record.
+ * A ClassFragment is decoded on first lookup.
+ *
+ * File layout: MAGIC, then records of [int payloadLength][payload], terminated by a 0 length.
+ * The length of a record is written after its payload, so that a partially written record is never read.
+ * Payload: head hash (81), classHash (81), className (27), int dataSize, int refCount, int attributeCount,
+ * refCount referenced classHashes (81 each), then attributeCount [int length][name (27)].
+ */
+class ClassRegistry implements ClassStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassRegistry.class);
+
+    private static final byte[] MAGIC = "SERIXI-CLASSES-1".getBytes(StandardCharsets.US_ASCII);
+    private static final int INITIAL_SIZE = 1 << 20;
+    private static final int HASH_LENGTH = 81;
+    private static final int NAME_LENGTH = ClassFragment.LENGTH_OF_CLASSNAME_FIELD;
+    private static final int CLASS_HASH_OFFSET = 4 + HASH_LENGTH;
+
+    private final FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    //classHash -> offset of the record
+    private final Map<TryteHash, Integer> offsets = new ConcurrentHashMap<>();
+    private final ClassReferenceIndex references = new ClassReferenceIndex();
+    private int end;
+
+    ClassRegistry(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+        if (created) {
+            for (int i = 0; i < MAGIC.length; i++) {
+                buffer.put(i, MAGIC[i]);
+            }
+        } else {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.get(i) != MAGIC[i]) {
+                    throw new IOException(file + " is not a class registry");
+                }
+            }
+        }
+        end = MAGIC.length;
+        int length;
+        while (end + 4 <= buffer.capacity() && (length = buffer.getInt(end)) > 0) {
+            TryteHash classHash = TryteHash.of(readTrytes(end + CLASS_HASH_OFFSET, HASH_LENGTH));
+            offsets.put(classHash, end);
+            indexReferences(classHash, end);
+            end += 4 + length;
+        }
+        LOGGER.info("Class registry " + file + " opened: " + offsets.size() + " classes.");
+    }
+
+    @Override
+    public boolean contains(TryteHash classHash) {
+        return offsets.containsKey(classHash);
+    }
+
+    @Override
+    public Set<TryteHash> referencing(TryteHash referencedClassHash, int referenceIndex) {
+        return references.referencing(referencedClassHash, referenceIndex);
+    }
+
+    @Override
+    public Set<TryteHash> classHashes() {
+        return offsets.keySet();
+    }
+
+    @Override
+    public int size() {
+        return offsets.size();
+    }
+
+    @Override
+    public synchronized void append(ClassFragment classFragment) {
+        TryteHash classHash = classFragment.getClassTryteHash();
+        if (offsets.containsKey(classHash)) {
+            return;
+        }
+        int refCount = classFragment.getRefCount();
+        int attributeCount = classFragment.getAttributeCount();
+        int payloadLength = 2 * HASH_LENGTH + NAME_LENGTH + 12 + refCount * HASH_LENGTH + attributeCount * (4 + NAME_LENGTH);
+        ensureCapacity(end + 4 + payloadLength + 4);
+
+        MappedByteBuffer b = buffer;
+        int position = end + 4;
+        position = writeTrytes(b, position, classFragment.getHeadTransactionHash(), HASH_LENGTH);
+        position = writeTrytes(b, position, classFragment.getClassHash(), HASH_LENGTH);
+        position = writeTrytes(b, position, classFragment.getClassName(), NAME_LENGTH);
+        b.putInt(position, classFragment.getDataSize());
+        b.putInt(position + 4, refCount);
+        b.putInt(position + 8, attributeCount);
+        position += 12;
+        for (int i = 0; i < refCount; i++) {
+            position = writeTrytes(b, position, classFragment.getClassHashForReference(i), HASH_LENGTH);
+        }
+        for (int i = 0; i < attributeCount; i++) {
+            b.putInt(position, classFragment.getAttributeLength(i));
+            position = writeTrytes(b, position + 4, classFragment.getAttributeName(i), NAME_LENGTH);
+        }
+        //publish the record
+        b.putInt(end + 4 + payloadLength, 0);
+        b.putInt(end, payloadLength);
+        offsets.put(classHash, end);
+        references.add(classFragment);
+        end += 4 + payloadLength;
+    }
+
+    @Override
+    public ClassFragment load(TryteHash classHash) {
+        Integer offset = offsets.get(classHash);
+        if (offset == null) {
+            return null;
+        }
+        int position = offset + 4;
+        String headHash = readTrytes(position, HASH_LENGTH);
+        position += 2 * HASH_LENGTH;
+        String className = readTrytes(position, NAME_LENGTH);
+        position += NAME_LENGTH;
+        MappedByteBuffer b = buffer;
+        int dataSize = b.getInt(position);
+        int refCount = b.getInt(position + 4);
+        int attributeCount = b.getInt(position + 8);
+        position += 12;
+        String[] references = new String[refCount];
+        for (int i = 0; i < refCount; i++) {
+            references[i] = readTrytes(position, HASH_LENGTH);
+            position += HASH_LENGTH;
+        }
+        int[] attributesLength = new int[attributeCount];
+        String[] attributesName = new String[attributeCount];
+        for (int i = 0; i < attributeCount; i++) {
+            attributesLength[i] = b.getInt(position);
+            attributesName[i] = readTrytes(position + 4, NAME_LENGTH);
+            position += 4 + NAME_LENGTH;
+        }
+        return new ClassFragment(headHash, className, dataSize, attributesLength, attributesName, references, classHash.toString());
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close class registry", e);
+        }
+    }
+
+    private void indexReferences(TryteHash classHash, int offset) {
+        int position = offset + 4 + 2 * HASH_LENGTH + NAME_LENGTH;
+        int refCount = buffer.getInt(position + 4);
+        position += 12;
+        for (int i = 0; i < refCount; i++) {
+            references.add(classHash, i, TryteHash.of(readTrytes(position, HASH_LENGTH)));
+            position += HASH_LENGTH;
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long size = buffer.capacity();
+        while (size < required) {
+            size *= 2;
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow class registry", e);
+        }
+    }
+
+    private String readTrytes(int position, int length) {
+        MappedByteBuffer b = buffer;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) b.get(position + i);
+        }
+        return new String(chars);
+    }
+
+    private static int writeTrytes(MappedByteBuffer b, int position, String trytes, int length) {
+        for (int i = 0; i < length; i++) {
+            b.put(position + i, (byte) (i < trytes.length() ? trytes.charAt(i) : '9'));
+        }
+        return position + length;
+    }
+}
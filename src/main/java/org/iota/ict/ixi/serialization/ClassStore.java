@@ -0,0 +1,38 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+
+import java.util.Set;
+
+/**
+ * Durable storage of the ClassFragments metadata, behind the in-memory ClassFragments of Persistence.
+ * Implementations are thread safe.
+ * @see ClassRegistry
+ */
+interface ClassStore {
+
+    /**
+     * Store classFragment unless its classHash is already stored.
+     */
+    void append(ClassFragment classFragment);
+
+    /**
+     * @return the ClassFragment stored for classHash, without its transactions, or null when unknown
+     */
+    ClassFragment load(TryteHash classHash);
+
+    boolean contains(TryteHash classHash);
+
+    /**
+     * @param referenceIndex index of the reference to inspect, or a negative value for any reference
+     * @return the hashes of the stored classes referencing referencedClassHash
+     */
+    Set<TryteHash> referencing(TryteHash referencedClassHash, int referenceIndex);
+
+    Set<TryteHash> classHashes();
+
+    int size();
+
+    void close();
+}
@@ -0,0 +1,469 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.iota.ict.utils.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Tuning parameters of Serialization.ixi.
+ * Defaults can be overridden with system properties (e.g. -Dserialization.ixi.decodeWorkers=4)
+ * or programmatically before the module is started.
+ */
+@SuppressWarnings("WeakerAccess")
+public class Configuration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Configuration.class);
+    private static final String PREFIX = "serialization.ixi.";
+
+    private int decodeWorkers = Integer.getInteger(PREFIX + "decodeWorkers",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 2));
+
+    private int ingestionBatchSize = Integer.getInteger(PREFIX + "ingestionBatchSize", 256);
+
+    private int orphanCapacity = Integer.getInteger(PREFIX + "orphanCapacity", 10000);
+
+    private int orphanTimeToLiveSeconds = Integer.getInteger(PREFIX + "orphanTimeToLiveSeconds", 600);
+
+    private String classRegistryFile = System.getProperty(PREFIX + "classRegistryFile", "");
+
+    private int warmStartParallelism = Integer.getInteger(PREFIX + "warmStartParallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    private int seenFragmentCapacity = Integer.getInteger(PREFIX + "seenFragmentCapacity", 100000);
+
+    private int gossipQueueCapacity = Integer.getInteger(PREFIX + "gossipQueueCapacity", 100000);
+
+    private int eeeQueueCapacity = Integer.getInteger(PREFIX + "eeeQueueCapacity", 1000);
+
+    private SheddingPolicy sheddingPolicy = enumProperty("sheddingPolicy", SheddingPolicy.class, SheddingPolicy.DROP_OLDEST);
+
+    private int sampleRate = Integer.getInteger(PREFIX + "sampleRate", 10);
+
+    private int cleanerBudget = Integer.getInteger(PREFIX + "cleanerBudget", 1000);
+
+    //shorter outside of the main run modus so that tests observe the cleaner
+    private int cleanerIntervalSeconds = Integer.getInteger(PREFIX + "cleanerIntervalSeconds",
+            Constants.RUN_MODUS == Constants.RunModus.MAIN ? 60 : 3);
+
+    private int classCapacity = Integer.getInteger(PREFIX + "classCapacity", 0);
+
+    private int referencingCapacity = Integer.getInteger(PREFIX + "referencingCapacity", 0);
+
+    private EvictionPolicy evictionPolicy = enumProperty("evictionPolicy", EvictionPolicy.class, EvictionPolicy.LRU);
+
+    private String checkpointFile = System.getProperty(PREFIX + "checkpointFile", "");
+
+    private int checkpointIntervalSeconds = Integer.getInteger(PREFIX + "checkpointIntervalSeconds", 600);
+
+    private StorageType storage = enumProperty("storage", StorageType.class, StorageType.MEMORY);
+
+    private String storageDirectory = System.getProperty(PREFIX + "storageDirectory", "modules/serialization.ixi/postings");
+
+    private Set<String> payloadClasses = parseHashes(System.getProperty(PREFIX + "payloadClasses", ""));
+
+    private String payloadDirectory = System.getProperty(PREFIX + "payloadDirectory", "modules/serialization.ixi/payloads");
+
+    private int payloadCapacityMegabytes = Integer.getInteger(PREFIX + "payloadCapacityMegabytes", 1024);
+
+    private int messageCacheMegabytes = Integer.getInteger(PREFIX + "messageCacheMegabytes", 64);
+
+    /**
+     * @return the number of threads decoding gossiped bundles in parallel
+     */
+    public int getDecodeWorkers() {
+        return decodeWorkers;
+    }
+
+    public Configuration setDecodeWorkers(int decodeWorkers) {
+        if (decodeWorkers < 1) {
+            throw new IllegalArgumentException("decodeWorkers must be greater than 0");
+        }
+        this.decodeWorkers = decodeWorkers;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of gossip events drained from the receive queue and processed as one batch
+     */
+    public int getIngestionBatchSize() {
+        return ingestionBatchSize;
+    }
+
+    public Configuration setIngestionBatchSize(int ingestionBatchSize) {
+        if (ingestionBatchSize < 1) {
+            throw new IllegalArgumentException("ingestionBatchSize must be greater than 0");
+        }
+        this.ingestionBatchSize = ingestionBatchSize;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of DataFragments waiting for their ClassFragment (0 disables parking)
+     */
+    public int getOrphanCapacity() {
+        return orphanCapacity;
+    }
+
+    public Configuration setOrphanCapacity(int orphanCapacity) {
+        if (orphanCapacity < 0) {
+            throw new IllegalArgumentException("orphanCapacity cannot be negative");
+        }
+        this.orphanCapacity = orphanCapacity;
+        return this;
+    }
+
+    /**
+     * @return how long a DataFragment waits for its ClassFragment before being dropped
+     */
+    public int getOrphanTimeToLiveSeconds() {
+        return orphanTimeToLiveSeconds;
+    }
+
+    public Configuration setOrphanTimeToLiveSeconds(int orphanTimeToLiveSeconds) {
+        if (orphanTimeToLiveSeconds < 1) {
+            throw new IllegalArgumentException("orphanTimeToLiveSeconds must be greater than 0");
+        }
+        this.orphanTimeToLiveSeconds = orphanTimeToLiveSeconds;
+        return this;
+    }
+
+    /**
+     * @return the file storing the ClassFragments across restarts, empty (the default) when disabled,
+     * e.g. modules/serialization.ixi/classes.db to enable the registry
+     */
+    public String getClassRegistryFile() {
+        return classRegistryFile;
+    }
+
+    public Configuration setClassRegistryFile(String classRegistryFile) {
+        if (classRegistryFile == null) {
+            throw new IllegalArgumentException("classRegistryFile cannot be null, use an empty string to disable the registry");
+        }
+        this.classRegistryFile = classRegistryFile;
+        return this;
+    }
+
+    /**
+     * @return the number of threads parsing the fragments stored in the Ict when the module starts (0 disables the rebuild)
+     */
+    public int getWarmStartParallelism() {
+        return warmStartParallelism;
+    }
+
+    public Configuration setWarmStartParallelism(int warmStartParallelism) {
+        if (warmStartParallelism < 0) {
+            throw new IllegalArgumentException("warmStartParallelism cannot be negative");
+        }
+        this.warmStartParallelism = warmStartParallelism;
+        return this;
+    }
+
+    /**
+     * @return the number of recently ingested fragments remembered to skip duplicates (0 disables deduplication)
+     */
+    public int getSeenFragmentCapacity() {
+        return seenFragmentCapacity;
+    }
+
+    public Configuration setSeenFragmentCapacity(int seenFragmentCapacity) {
+        if (seenFragmentCapacity < 0) {
+            throw new IllegalArgumentException("seenFragmentCapacity cannot be negative");
+        }
+        this.seenFragmentCapacity = seenFragmentCapacity;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of gossiped bundle heads waiting to be decoded
+     */
+    public int getGossipQueueCapacity() {
+        return gossipQueueCapacity;
+    }
+
+    public Configuration setGossipQueueCapacity(int gossipQueueCapacity) {
+        if (gossipQueueCapacity < 1) {
+            throw new IllegalArgumentException("gossipQueueCapacity must be greater than 0");
+        }
+        this.gossipQueueCapacity = gossipQueueCapacity;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of requests waiting in the queue of each EEE function
+     */
+    public int getEeeQueueCapacity() {
+        return eeeQueueCapacity;
+    }
+
+    public Configuration setEeeQueueCapacity(int eeeQueueCapacity) {
+        if (eeeQueueCapacity < 1) {
+            throw new IllegalArgumentException("eeeQueueCapacity must be greater than 0");
+        }
+        this.eeeQueueCapacity = eeeQueueCapacity;
+        return this;
+    }
+
+    /**
+     * @return what to do with gossip events and EEE requests exceeding the queue capacities
+     */
+    public SheddingPolicy getSheddingPolicy() {
+        return sheddingPolicy;
+    }
+
+    public Configuration setSheddingPolicy(SheddingPolicy sheddingPolicy) {
+        if (sheddingPolicy == null) {
+            throw new IllegalArgumentException("sheddingPolicy cannot be null");
+        }
+        this.sheddingPolicy = sheddingPolicy;
+        return this;
+    }
+
+    /**
+     * @return with {@link SheddingPolicy#SAMPLE}, one event out of sampleRate is kept when a queue is full
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public Configuration setSampleRate(int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate must be greater than 0");
+        }
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of index entries checked by the persistence cleaner per run
+     */
+    public int getCleanerBudget() {
+        return cleanerBudget;
+    }
+
+    public Configuration setCleanerBudget(int cleanerBudget) {
+        if (cleanerBudget < 1) {
+            throw new IllegalArgumentException("cleanerBudget must be greater than 0");
+        }
+        this.cleanerBudget = cleanerBudget;
+        return this;
+    }
+
+    /**
+     * @return the delay between two runs of the persistence cleaner, in seconds
+     */
+    public int getCleanerIntervalSeconds() {
+        return cleanerIntervalSeconds;
+    }
+
+    public Configuration setCleanerIntervalSeconds(int cleanerIntervalSeconds) {
+        if (cleanerIntervalSeconds < 1) {
+            throw new IllegalArgumentException("cleanerIntervalSeconds must be greater than 0");
+        }
+        this.cleanerIntervalSeconds = cleanerIntervalSeconds;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of ClassFragments held in memory (0 for no limit), ignored without a class registry
+     */
+    public int getClassCapacity() {
+        return classCapacity;
+    }
+
+    public Configuration setClassCapacity(int classCapacity) {
+        if (classCapacity < 0) {
+            throw new IllegalArgumentException("classCapacity cannot be negative");
+        }
+        this.classCapacity = classCapacity;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of (referenced transaction, DataFragment, reference index) entries indexed (0 for no limit)
+     */
+    public int getReferencingCapacity() {
+        return referencingCapacity;
+    }
+
+    public Configuration setReferencingCapacity(int referencingCapacity) {
+        if (referencingCapacity < 0) {
+            throw new IllegalArgumentException("referencingCapacity cannot be negative");
+        }
+        this.referencingCapacity = referencingCapacity;
+        return this;
+    }
+
+    /**
+     * @return which entries are dropped when an index reaches its capacity
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public Configuration setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        if (evictionPolicy == null) {
+            throw new IllegalArgumentException("evictionPolicy cannot be null");
+        }
+        this.evictionPolicy = evictionPolicy;
+        return this;
+    }
+
+    /**
+     * @return the file the indexes are checkpointed to and restored from at start, empty (the default) when
+     * checkpoints are disabled, e.g. modules/serialization.ixi/checkpoint.db to enable them
+     */
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public Configuration setCheckpointFile(String checkpointFile) {
+        if (checkpointFile == null) {
+            throw new IllegalArgumentException("checkpointFile cannot be null, use an empty string to disable checkpoints");
+        }
+        this.checkpointFile = checkpointFile;
+        return this;
+    }
+
+    /**
+     * @return the delay between two checkpoints, in seconds
+     */
+    public int getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    public Configuration setCheckpointIntervalSeconds(int checkpointIntervalSeconds) {
+        if (checkpointIntervalSeconds < 1) {
+            throw new IllegalArgumentException("checkpointIntervalSeconds must be greater than 0");
+        }
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+        return this;
+    }
+
+    /**
+     * @return where the postings of the referencing and class hash indexes are stored
+     */
+    public StorageType getStorage() {
+        return storage;
+    }
+
+    public Configuration setStorage(StorageType storage) {
+        if (storage == null) {
+            throw new IllegalArgumentException("storage cannot be null");
+        }
+        this.storage = storage;
+        return this;
+    }
+
+    /**
+     * @return the directory of the posting logs, with {@link StorageType#LOG}
+     */
+    public String getStorageDirectory() {
+        return storageDirectory;
+    }
+
+    public Configuration setStorageDirectory(String storageDirectory) {
+        if (storageDirectory == null || storageDirectory.isEmpty()) {
+            throw new IllegalArgumentException("storageDirectory cannot be empty");
+        }
+        this.storageDirectory = storageDirectory;
+        return this;
+    }
+
+    /**
+     * @return the class hashes of the DataFragments whose payload is kept on disk once their transactions
+     * are dropped by the Ict (empty to disable the payload store)
+     */
+    public Set<String> getPayloadClasses() {
+        return payloadClasses;
+    }
+
+    public Configuration setPayloadClasses(Set<String> payloadClasses) {
+        if (payloadClasses == null) {
+            throw new IllegalArgumentException("payloadClasses cannot be null, use an empty set to disable the payload store");
+        }
+        for (String classHash : payloadClasses) {
+            if (!TryteHash.isValid(classHash)) {
+                throw new IllegalArgumentException("'" + classHash + "' is not a valid class hash");
+            }
+        }
+        this.payloadClasses = Collections.unmodifiableSet(new LinkedHashSet<>(payloadClasses));
+        return this;
+    }
+
+    /**
+     * @return the directory of the payload store segments
+     */
+    public String getPayloadDirectory() {
+        return payloadDirectory;
+    }
+
+    public Configuration setPayloadDirectory(String payloadDirectory) {
+        if (payloadDirectory == null || payloadDirectory.isEmpty()) {
+            throw new IllegalArgumentException("payloadDirectory cannot be empty");
+        }
+        this.payloadDirectory = payloadDirectory;
+        return this;
+    }
+
+    /**
+     * @return the disk space of the payload store in megabytes (0 for no limit), the oldest payloads are dropped first
+     */
+    public int getPayloadCapacityMegabytes() {
+        return payloadCapacityMegabytes;
+    }
+
+    public Configuration setPayloadCapacityMegabytes(int payloadCapacityMegabytes) {
+        if (payloadCapacityMegabytes < 0) {
+            throw new IllegalArgumentException("payloadCapacityMegabytes cannot be negative");
+        }
+        this.payloadCapacityMegabytes = payloadCapacityMegabytes;
+        return this;
+    }
+
+    /**
+     * @return the memory holding the flattened messages of the DataFragments in megabytes (0 disables the cache),
+     * the least recently read messages are dropped first
+     */
+    public int getMessageCacheMegabytes() {
+        return messageCacheMegabytes;
+    }
+
+    public Configuration setMessageCacheMegabytes(int messageCacheMegabytes) {
+        if (messageCacheMegabytes < 0) {
+            throw new IllegalArgumentException("messageCacheMegabytes cannot be negative");
+        }
+        this.messageCacheMegabytes = messageCacheMegabytes;
+        return this;
+    }
+
+    /**
+     * @return the value of the system property PREFIX + name, defaultValue when it is not set or invalid
+     */
+    private static <E extends Enum<E>> E enumProperty(String name, Class<E> type, E defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid " + PREFIX + name + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static Set<String> parseHashes(String hashes) {
+        Set<String> ret = new LinkedHashSet<>();
+        for (String hash : hashes.split(",")) {
+            if (!hash.trim().isEmpty()) {
+                ret.add(hash.trim());
+            }
+        }
+        return Collections.unmodifiableSet(ret);
+    }
+}
@@ -8,13 +8,18 @@ import org.iota.ict.ixi.serialization.model.DataFragment;
 import org.iota.ict.utils.Trytes;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 @SuppressWarnings("WeakerAccess")
 public class EEEFunctions {
 
     private final SerializationModule serializationModule;
     private final Ixi ixi;
+    private final List<EEERequestHandler> handlers = new ArrayList<>();
 
     /**
      * This function will auto-discrimate between attribute (integer<space>attributeName) or classHash (trytes)
@@ -104,6 +109,14 @@ public class EEEFunctions {
      */
     private final EEEFunction findReferencing = new EEEFunction(new FunctionEnvironment("Serialization.ixi", "findReferencing"));
 
+    /**
+     * Input  : (ignored)
+     * Output : <metric_name>=<value>[;<metric_name>=<value>]*
+     *
+     * Example : ingest.bundles=1234;ingest.classFragments=3;...
+     */
+    private final EEEFunction getStats = new EEEFunction(new FunctionEnvironment("Serialization.ixi", "getStats"));
+
 
     EEEFunctions(SerializationModule serializationModule, Ixi ixi){
         this.serializationModule = serializationModule;
@@ -119,21 +132,40 @@ public class EEEFunctions {
         ixi.addListener(getReferencedAttribute);
         ixi.addListener(findFragmentsForClass);
         ixi.addListener(findReferencing);
+        ixi.addListener(getStats);
+
+        startHandler(computeClassHash, this::processComputeClassHashRequest);
+        startHandler(publishDataFragment, this::processPublishDataRequest);
+        startHandler(publishClassFragment, this::processPublishClassRequest);
+        startHandler(prepareDataFragment, this::processPrepareDataRequest);
+        startHandler(prepareClassFragment, this::processPrepareClassRequest);
+        startHandler(getAttribute, this::processGetAttributeRequest);
+        startHandler(getReferencedAttribute, this::processGetReferencedAttributeRequest);
+        startHandler(getReference, this::processGetReferenceRequest);
+        startHandler(findFragmentsForClass, this::processFindFragmentsForClassRequest);
+        startHandler(findReferencing, this::processFindReferencingRequest);
+        startHandler(getStats, this::processGetStatsRequest);
+    }
+
+    public static EEEFunctions init(SerializationModule serializationModule, Ixi ixi) {
+        return new EEEFunctions(serializationModule, ixi);
+    }
 
-        new EEERequestHandler(computeClassHash, this::processComputeClassHashRequest).start();
-        new EEERequestHandler(publishDataFragment, this::processPublishDataRequest).start();
-        new EEERequestHandler(publishClassFragment, this::processPublishClassRequest).start();
-        new EEERequestHandler(prepareDataFragment, this::processPrepareDataRequest).start();
-        new EEERequestHandler(prepareClassFragment, this::processPrepareClassRequest).start();
-        new EEERequestHandler(getAttribute, this::processGetAttributeRequest).start();
-        new EEERequestHandler(getReferencedAttribute, this::processGetReferencedAttributeRequest).start();
-        new EEERequestHandler(getReference, this::processGetReferenceRequest).start();
-        new EEERequestHandler(findFragmentsForClass, this::processFindFragmentsForClassRequest).start();
-        new EEERequestHandler(findReferencing, this::processFindReferencingRequest).start();
+    private void startHandler(EEEFunction eeeFunction, EEEHandler handler) {
+        EEERequestHandler requestHandler = new EEERequestHandler(eeeFunction, handler);
+        handlers.add(requestHandler);
+        requestHandler.start();
     }
 
-    public static void init(SerializationModule serializationModule, Ixi ixi) {
-        new EEEFunctions(serializationModule, ixi);
+    /**
+     * @return the number of requests dropped because the queue of the function was full, keyed by function environment
+     */
+    Map<String, Long> getShedRequestCounts() {
+        Map<String, Long> ret = new LinkedHashMap<>();
+        for (EEERequestHandler handler : handlers) {
+            ret.put(handler.eeeFunction.getEnvironment().toString(), handler.shed.sum());
+        }
+        return ret;
     }
 
 
@@ -307,7 +339,7 @@ public class EEEFunctions {
                 i +=2;
 
                 DataFragment.Filter itemFilter =
-                        dataFragment -> dataFragment.getAttributeAsTryte(fieldIndex).startsWith(fieldValue);
+                        dataFragment -> dataFragment.getAttributeView(fieldIndex).startsWith(fieldValue);
 
                 if(filter==null){
                     filter = itemFilter;
@@ -320,13 +352,22 @@ public class EEEFunctions {
         returnFragmentSet(request, fragments);
     }
 
+    private void processGetStatsRequest(EEEFunction.Request request) {
+        Map<String, Long> stats = serializationModule.getStats();
+        List<String> ret = new ArrayList<>(stats.size());
+        for (Map.Entry<String, Long> entry : stats.entrySet()) {
+            ret.add(entry.getKey() + "=" + entry.getValue());
+        }
+        request.submitReturn(ixi, String.join(";", ret));
+    }
+
     private void returnFragmentSet(EEEFunction.Request request, Set<DataFragment> fragments) {
         if (fragments.size() == 0) {
             request.submitReturn(ixi, "");
         } else {
             ArrayList<String> ret = new ArrayList<>(fragments.size());
             for (DataFragment fragment : fragments) {
-                ret.add(fragment.getHeadTransaction().hash);
+                ret.add(fragment.getHeadTransactionHash());
             }
             request.submitReturn(ixi, String.join(";", ret));
         }
@@ -336,23 +377,60 @@ public class EEEFunctions {
 
         final EEEHandler handler;
         final EEEFunction eeeFunction;
+        final LongAdder requests;
+        final LongAdder shed;
+        final Metrics.Histogram latency;
+        private final SheddingPolicy policy;
+        private final int capacity;
+        private final int sampleRate;
+        private long overflowCount;
 
         public EEERequestHandler(EEEFunction eeeFunction, EEEHandler handler) {
             setName("EEEFunction-"+eeeFunction.getEnvironment().toString());
             this.handler = handler;
             this.eeeFunction = eeeFunction;
+            String name = "eee." + eeeFunction.getEnvironment().toString();
+            Metrics metrics = serializationModule.getMetrics();
+            this.requests = metrics.counter(name + ".requests");
+            this.shed = metrics.counter(name + ".shed");
+            this.latency = metrics.histogram(name + ".latencyMicros");
+            Configuration configuration = serializationModule.getConfiguration();
+            this.policy = configuration.getSheddingPolicy();
+            this.capacity = configuration.getEeeQueueCapacity();
+            this.sampleRate = configuration.getSampleRate();
         }
 
         @Override
         public void run() {
             while (serializationModule.isRunning()) {
                 try {
-                    handler.handleRequest(eeeFunction.requestQueue.take());
+                    EEEFunction.Request request = eeeFunction.requestQueue.take();
+                    requests.increment();
+                    if (mustShed()) {
+                        shed.increment();
+                        //answer right away, the caller is not left waiting for a timeout
+                        request.submitReturn(ixi, "");
+                    } else {
+                        long start = System.nanoTime();
+                        handler.handleRequest(request);
+                        latency.record((System.nanoTime() - start) / 1000);
+                    }
                 } catch (InterruptedException e) {
                     if (serializationModule.isRunning()) throw new RuntimeException(e);
                 }
             }
         }
+
+        /**
+         * The request queue is owned by the Ict and unbounded: requests are shed when taken,
+         * as long as more than capacity requests are pending (the taken request being the oldest one).
+         */
+        private boolean mustShed() {
+            if (policy == SheddingPolicy.BLOCK || eeeFunction.requestQueue.size() < capacity) {
+                return false;
+            }
+            return policy != SheddingPolicy.SAMPLE || overflowCount++ % sampleRate != 0;
+        }
     }
 
     interface EEEHandler {
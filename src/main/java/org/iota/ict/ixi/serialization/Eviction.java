@@ -0,0 +1,32 @@
+package org.iota.ict.ixi.serialization;
+
+import java.util.function.Predicate;
+
+/**
+ * Tracks the keys of a capped index and chooses which one to evict.
+ * Implementations are not thread safe: callers synchronize on the instance.
+ */
+interface Eviction<K> {
+
+    /**
+     * Start tracking key, or count a new use when it is already tracked.
+     */
+    void onInsert(K key);
+
+    void onAccess(K key);
+
+    void onRemove(K key);
+
+    /**
+     * Stop tracking and return the next key to evict.
+     * @param pinned keys that must not be evicted
+     * @return null when no key can be evicted
+     */
+    K victim(Predicate<K> pinned);
+
+    int size();
+
+    static <K> Eviction<K> create(EvictionPolicy policy) {
+        return policy == EvictionPolicy.TINY_LFU ? new TinyLfuEviction<>() : new LruEviction<>();
+    }
+}
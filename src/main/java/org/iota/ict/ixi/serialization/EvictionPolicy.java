@@ -0,0 +1,26 @@
+package org.iota.ict.ixi.serialization;
+
+/**
+ * Which entries Persistence drops when an index reaches its capacity
+ * (see {@link Configuration#getClassCapacity()} and {@link Configuration#getReferencingCapacity()}).
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Evict the least recently used entry.
+     */
+    LRU,
+
+    /**
+     * Evict the least frequently used among the least recently used entries.
+     * Frequencies are estimated by a compact sketch and decay over time, so a burst of one-off entries
+     * cannot push out the entries used over and over.
+     */
+    TINY_LFU,
+
+    /**
+     * As with LRU, but ClassFragments of classes registered with
+     * {@link SerializationModule#registerDataListener(String, String)} are never evicted.
+     */
+    PIN_LISTENED
+}
@@ -0,0 +1,134 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.eee.EffectListener;
+import org.iota.ict.eee.Environment;
+import org.iota.ict.network.gossip.GossipEvent;
+import org.iota.ict.utils.Constants;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Receive stage of the ingestion pipeline: buffers the GossipEvents submitted by the Ict.
+ * Only bundle heads are queued, the other transactions are reached through the trunk chain.
+ * The queue is bounded, events exceeding the capacity are handled according to a {@link SheddingPolicy}.
+ */
+class GossipEventQueue implements EffectListener<GossipEvent> {
+
+    //queued events inspected to find a non-listened one to drop, past it the incoming event is dropped instead
+    private static final int SCAN_LIMIT = 1024;
+
+    private final BlockingQueue<GossipEvent> queue;
+    private final SheddingPolicy policy;
+    private final int sampleRate;
+    private final Predicate<GossipEvent> isListened;
+    private final LongAdder shed = new LongAdder();
+    //onReceive is called concurrently by the Ict
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    GossipEventQueue(int capacity, SheddingPolicy policy, int sampleRate, Predicate<GossipEvent> isListened) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.isListened = isListened;
+    }
+
+    @Override
+    public void onReceive(GossipEvent effect) {
+        if (!effect.getTransaction().isBundleHead) {
+            return;
+        }
+        if (queue.offer(effect)) {
+            return;
+        }
+        switch (policy) {
+            case BLOCK:
+                try {
+                    queue.put(effect);
+                } catch (InterruptedException e) {
+                    shed.increment();
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_NON_LISTENED_CLASSES:
+                if (isListened.test(effect)) {
+                    replaceOldestNonListened(effect);
+                } else {
+                    shed.increment();
+                }
+                break;
+            case SAMPLE:
+                if (overflowCount.getAndIncrement() % sampleRate == 0) {
+                    replaceOldest(effect);
+                } else {
+                    shed.increment();
+                }
+                break;
+            default:
+                replaceOldest(effect);
+        }
+    }
+
+    private void replaceOldest(GossipEvent effect) {
+        while (!queue.offer(effect)) {
+            if (queue.poll() != null) {
+                shed.increment();
+            }
+        }
+    }
+
+    /**
+     * Make room for effect by dropping the oldest queued event that is not listened.
+     * effect is dropped when the queued events are all listened.
+     */
+    private void replaceOldestNonListened(GossipEvent effect) {
+        while (!queue.offer(effect)) {
+            GossipEvent victim = null;
+            Iterator<GossipEvent> iterator = queue.iterator();
+            for (int i = 0; i < SCAN_LIMIT && iterator.hasNext(); i++) {
+                GossipEvent queued = iterator.next();
+                if (!isListened.test(queued)) {
+                    victim = queued;
+                    break;
+                }
+            }
+            if (victim == null) {
+                shed.increment();
+                return;
+            }
+            if (queue.remove(victim)) {
+                shed.increment();
+            }
+        }
+    }
+
+    @Override
+    public Environment getEnvironment() {
+        return Constants.Environments.GOSSIP;
+    }
+
+    /**
+     * Wait for at least one event, then move up to maxEvents pending events to batch.
+     * @return the number of events added to batch
+     */
+    int drainTo(Collection<GossipEvent> batch, int maxEvents) throws InterruptedException {
+        batch.add(queue.take());
+        return 1 + queue.drainTo(batch, maxEvents - 1);
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    long getShedCount() {
+        return shed.sum();
+    }
+}
@@ -0,0 +1,260 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.model.transaction.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Staged processing of gossiped bundles.
+ *
+ * The receive stage (the caller of {@link #submit(List)}) splits each batch of bundles between N decode workers,
+ * partitioned by bundle head hash. Decoding (bundle validation, fragment detection, parsing) runs in parallel.
+ * A single persist stage then applies each batch in one pass, in the order the bundles were submitted,
+ * so that a ClassFragment is always persisted before the DataFragments received after it.
+ *
+ * At most maxInFlightBatches batches are decoded or waiting to be persisted: {@link #submit(List)} blocks past it,
+ * so that a slow stage pushes back on the receive stage (and the gossip queue sheds) instead of filling the heap.
+ *
+ * @param <R> the result of the decode stage
+ */
+class IngestionPipeline<R> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    static final int MAX_IN_FLIGHT_BATCHES = 4;
+
+    interface Stages<R> {
+
+        /**
+         * Called concurrently from decode workers. Must not modify shared state.
+         * @return the decoded bundle, or null when there is nothing to apply
+         */
+        R decode(Transaction bundleHead);
+
+        /**
+         * Called from the persist stage only, once per batch.
+         * @param decoded the non null decode results of the batch, in submission order
+         */
+        void apply(List<R> decoded);
+    }
+
+    private final Stages<R> stages;
+    private final List<DecodeWorker> decodeWorkers = new ArrayList<>();
+    private final PersistWorker persistWorker;
+    private final BlockingQueue<Batch> persistQueue = new LinkedBlockingQueue<>();
+    //released by the persist stage once a batch is applied
+    private final Semaphore inFlightBatches;
+    private volatile boolean running;
+
+    IngestionPipeline(Stages<R> stages, int decodeWorkerCount) {
+        this(stages, decodeWorkerCount, MAX_IN_FLIGHT_BATCHES);
+    }
+
+    IngestionPipeline(Stages<R> stages, int decodeWorkerCount, int maxInFlightBatches) {
+        this.stages = stages;
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
+        for (int i = 0; i < decodeWorkerCount; i++) {
+            decodeWorkers.add(new DecodeWorker(i));
+        }
+        persistWorker = new PersistWorker();
+    }
+
+    void start() {
+        running = true;
+        for (DecodeWorker worker : decodeWorkers) {
+            worker.start();
+        }
+        persistWorker.start();
+    }
+
+    void terminate() {
+        running = false;
+        for (DecodeWorker worker : decodeWorkers) {
+            worker.interrupt();
+        }
+        persistWorker.interrupt();
+    }
+
+    /**
+     * Receive stage. Must be called from a single thread.
+     * Blocks while maxInFlightBatches batches are not persisted yet.
+     */
+    void submit(List<Transaction> bundleHeads) throws InterruptedException {
+        if (bundleHeads.isEmpty()) {
+            return;
+        }
+        inFlightBatches.acquire();
+        Batch batch = new Batch(bundleHeads);
+        List<List<Integer>> partitions = new ArrayList<>(decodeWorkers.size());
+        for (int i = 0; i < decodeWorkers.size(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < batch.bundleHeads.length; i++) {
+            partitions.get(partition(batch.bundleHeads[i])).add(i);
+        }
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!partitions.get(i).isEmpty()) {
+                tasks.add(new Task(batch, partitions.get(i), decodeWorkers.get(i)));
+            }
+        }
+        batch.decoded = new CountDownLatch(tasks.size());
+        //batches enter the persist queue in submission order, the persist stage waits for each of them to be decoded
+        persistQueue.add(batch);
+        for (Task task : tasks) {
+            task.worker.queue.add(task);
+        }
+    }
+
+    private int partition(Transaction bundleHead) {
+        return Math.floorMod(bundleHead.hash.hashCode(), decodeWorkers.size());
+    }
+
+    /**
+     * @return the number of bundles waiting in each stage, keyed by stage name
+     */
+    Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> ret = new LinkedHashMap<>();
+        for (int i = 0; i < decodeWorkers.size(); i++) {
+            int depth = 0;
+            for (Task task : decodeWorkers.get(i).queue) {
+                depth += task.indexes.size();
+            }
+            ret.put("decode-" + i, depth);
+        }
+        ret.put("persist", countBundles(persistQueue));
+        return ret;
+    }
+
+    private int countBundles(Collection<Batch> batches) {
+        int ret = 0;
+        for (Batch batch : batches) {
+            ret += batch.bundleHeads.length;
+        }
+        return ret;
+    }
+
+    private class Batch {
+
+        private final Transaction[] bundleHeads;
+        private final Object[] results;
+        private CountDownLatch decoded;
+
+        Batch(List<Transaction> bundleHeads) {
+            this.bundleHeads = bundleHeads.toArray(new Transaction[0]);
+            this.results = new Object[this.bundleHeads.length];
+        }
+
+        @SuppressWarnings("unchecked")
+        List<R> await() throws InterruptedException {
+            decoded.await();
+            List<R> ret = new ArrayList<>(results.length);
+            for (Object result : results) {
+                if (result != null) {
+                    ret.add((R) result);
+                }
+            }
+            Arrays.fill(results, null);
+            return ret;
+        }
+    }
+
+    /**
+     * The part of a batch assigned to one decode worker.
+     */
+    private class Task {
+
+        private final Batch batch;
+        private final List<Integer> indexes;
+        private final DecodeWorker worker;
+
+        Task(Batch batch, List<Integer> indexes, DecodeWorker worker) {
+            this.batch = batch;
+            this.indexes = indexes;
+            this.worker = worker;
+        }
+
+        void run() {
+            try {
+                for (int index : indexes) {
+                    Transaction bundleHead = batch.bundleHeads[index];
+                    try {
+                        batch.results[index] = stages.decode(bundleHead);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Failed to decode bundle " + bundleHead.hash, e);
+                    }
+                }
+            } finally {
+                //the persist worker waits for every task of the batch, even when one dies on an Error
+                batch.decoded.countDown();
+            }
+        }
+    }
+
+    private class DecodeWorker extends Thread {
+
+        private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+
+        DecodeWorker(int index) {
+            setName("Serialization-decode-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    queue.take().run();
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Throwable t) {
+                    //the worker must survive: the later tasks of its partition would never run
+                    LOGGER.error("Decode task failed", t);
+                }
+            }
+        }
+    }
+
+    private class PersistWorker extends Thread {
+
+        PersistWorker() {
+            setName("Serialization-persist");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    Batch batch = persistQueue.take();
+                    try {
+                        List<R> decoded = batch.await();
+                        if (!decoded.isEmpty()) {
+                            stages.apply(decoded);
+                        }
+                    } finally {
+                        inFlightBatches.release();
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to persist decoded batch", e);
+                } catch (Error e) {
+                    //same as the decode workers: ingestion stops for good if the persist stage dies
+                    LOGGER.error("Failed to persist decoded batch", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,740 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * File-backed, log-structured posting store ({@link StorageType#LOG}).
+ *
+ * Postings are appended to a log of fixed-size records: [byte op][key (7 longs)][fragment head (7 longs)]
+ * [int reference index][long offset of the previous record of the key, -1 for the first one].
+ * Only the directory of keys (offset of the last record, posting count, a 64 bits fingerprint of each posting)
+ * is held in memory: the postings of a key are read by walking its records backwards. Removing a key appends
+ * a tombstone. Dropping a posting appends a DROP record of the same (fragment head, reference index) to the chain
+ * of the key: the older posting is skipped when the chain is walked. A posting whose fingerprint is already
+ * known for its key is not appended again, without reading the log.
+ *
+ * The log is replayed when the store is opened. A background thread compacts it once more than half of its
+ * records are dead (removed keys, tombstones, dropped postings): live postings are copied to a new log while writers
+ * keep appending to the old one, then the records appended meanwhile are replayed and the new log replaces the old.
+ *
+ * DataFragments are rebuilt from their head hash by the resolver on each lookup. Postings whose fragment
+ * cannot be resolved anymore (its transactions left the Ict) are skipped, and dropped by the sweep.
+ */
+class LogPostingStore implements PostingStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogPostingStore.class);
+
+    private static final byte[] MAGIC = "SERIXI-POSTINGS-1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte DROP = 3;
+    private static final int KEY_BYTES = TryteHash.WORDS * 8;
+    private static final int RECORD_BYTES = 1 + 2 * KEY_BYTES + 4 + 8;
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+    private static final long COMPACTION_CHECK_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final File file;
+    private final Function<String, DataFragment> resolver;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Thread compactor;
+
+    private volatile Log log;
+    private Iterator<TryteHash> sweepIterator;
+    private volatile long collectedPostings;
+
+    LogPostingStore(File file, Function<String, DataFragment> resolver) throws IOException {
+        this.file = file;
+        this.resolver = resolver;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        log = Log.open(file);
+        LOGGER.info("Posting log " + file + " opened: " + log.keys.size() + " keys, " + log.livePostings + " postings.");
+        compactor = new Thread(this::compactPeriodically);
+        compactor.setName("Serialization-compaction");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    @Override
+    public void addAll(String hash, List<DataFragment> fragments, int[] referenceIndexes) {
+        long[] key = new long[TryteHash.WORDS];
+        if (!TryteHash.pack(hash, key)) {
+            throw new IllegalArgumentException("'" + hash + "' is not an 81 trytes hash");
+        }
+        if (fragments.isEmpty()) {
+            return;
+        }
+        long[] head = new long[TryteHash.WORDS];
+        lock.writeLock().lock();
+        try {
+            Log log = this.log;
+            TryteHash keyHash = TryteHash.of(hash);
+            ByteBuffer records = ByteBuffer.allocate(fragments.size() * RECORD_BYTES);
+            Entry entry = log.keys.computeIfAbsent(keyHash, k -> new Entry());
+            int added = 0;
+            for (int i = 0; i < fragments.size(); i++) {
+                int referenceIndex = referenceIndexes == null ? ANY_INDEX : referenceIndexes[i];
+                TryteHash.pack(fragments.get(i).getHeadTransactionHash(), head);
+                //postings already in the chain, e.g. added again by a warm start
+                if (!entry.fingerprints.add(fingerprint(head, referenceIndex))) {
+                    continue;
+                }
+                long offset = log.end + records.position();
+                putRecord(records, ADD, key, head, referenceIndex, entry.last);
+                entry.last = offset;
+                entry.count++;
+                added++;
+            }
+            log.append(records);
+            log.livePostings += added;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<DataFragment> get(String hash, int referenceIndex) {
+        if (!TryteHash.isValid(hash)) {
+            return new HashSet<>();
+        }
+        return get(TryteHash.of(hash), referenceIndex);
+    }
+
+    @Override
+    public Set<DataFragment> get(TryteHash hash, int referenceIndex) {
+        Set<DataFragment> ret = new HashSet<>();
+        for (Map.Entry<String, Set<Integer>> postings : postings(hash).entrySet()) {
+            if (referenceIndex == ANY_INDEX || postings.getValue().contains(referenceIndex)) {
+                DataFragment fragment = resolver.apply(postings.getKey());
+                if (fragment != null) {
+                    ret.add(fragment);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the reference indexes of the postings of hash, by fragment head hash (duplicates removed)
+     */
+    private Map<String, Set<Integer>> postings(TryteHash hash) {
+        lock.readLock().lock();
+        try {
+            Entry entry = log.keys.get(hash);
+            return entry == null ? new LinkedHashMap<>() : log.postings(entry.last);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String hash) {
+        if (!TryteHash.isValid(hash)) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            return log.remove(TryteHash.of(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int sweep(int cursor, int budget, Collection<String> live, Collection<String> removed) {
+        Iterator<TryteHash> iterator;
+        synchronized (this) {
+            if (cursor == 0 || sweepIterator == null) {
+                sweepIterator = log.keys.keySet().iterator();
+            }
+            iterator = sweepIterator;
+        }
+        for (int i = 0; i < budget && iterator.hasNext(); i++) {
+            TryteHash hash = iterator.next();
+            Map<String, Set<Integer>> postings = postings(hash);
+            List<String> unresolvable = new ArrayList<>();
+            for (String head : postings.keySet()) {
+                if (resolver.apply(head) == null) {
+                    unresolvable.add(head);
+                }
+            }
+            if (unresolvable.size() < postings.size()) {
+                if (!unresolvable.isEmpty()) {
+                    collectedPostings += drop(hash, unresolvable);
+                }
+                live.add(hash.toString());
+            } else if (remove(hash.toString())) {
+                for (Set<Integer> referenceIndexes : postings.values()) {
+                    collectedPostings += referenceIndexes.size();
+                }
+                removed.add(hash.toString());
+            }
+        }
+        //the cursor only tells whether the sweep is over: the position is kept by the iterator
+        return iterator.hasNext() ? cursor + 1 : 0;
+    }
+
+    /**
+     * Drop the postings of the fragments heads under hash.
+     * @return the number of postings dropped
+     */
+    private int drop(TryteHash hash, Collection<String> heads) {
+        long[] key = new long[TryteHash.WORDS];
+        long[] head = new long[TryteHash.WORDS];
+        hash.copyTo(key);
+        lock.writeLock().lock();
+        try {
+            Entry entry = log.keys.get(hash);
+            if (entry == null) {
+                return 0;
+            }
+            //counted under the write lock: postings may have been added since the sweep read the chain
+            Map<String, Set<Integer>> postings = log.postings(entry.last);
+            int dropped = 0;
+            for (String headHash : heads) {
+                Set<Integer> referenceIndexes = postings.get(headHash);
+                if (referenceIndexes != null) {
+                    TryteHash.pack(headHash, head);
+                    for (int referenceIndex : referenceIndexes) {
+                        log.drop(hash, key, head, referenceIndex);
+                        dropped++;
+                    }
+                }
+            }
+            return dropped;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> referencedHashes() {
+        List<String> ret = new ArrayList<>();
+        for (TryteHash hash : log.keys.keySet()) {
+            ret.add(hash.toString());
+        }
+        return ret;
+    }
+
+    /**
+     * The log is durable: the snapshot reads it under the read lock, blocking writers while it is visited.
+     */
+    @Override
+    public Snapshot snapshot() {
+        return new Snapshot() {
+            @Override
+            public int size() {
+                return log.keys.size();
+            }
+
+            @Override
+            public void visit(Visitor visitor) throws IOException {
+                lock.readLock().lock();
+                try {
+                    for (TryteHash hash : log.keys.keySet()) {
+                        List<DataFragment> fragments = new ArrayList<>();
+                        List<Integer> referenceIndexes = new ArrayList<>();
+                        for (Map.Entry<String, Set<Integer>> postings : postings(hash).entrySet()) {
+                            DataFragment fragment = resolver.apply(postings.getKey());
+                            if (fragment != null) {
+                                for (int referenceIndex : postings.getValue()) {
+                                    fragments.add(fragment);
+                                    referenceIndexes.add(referenceIndex);
+                                }
+                            }
+                        }
+                        visitor.key(hash.toString(), fragments.size());
+                        for (int i = 0; i < fragments.size(); i++) {
+                            visitor.posting(fragments.get(i), referenceIndexes.get(i));
+                        }
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return log.keys.size();
+    }
+
+    @Override
+    public long postingCount() {
+        lock.readLock().lock();
+        try {
+            return log.livePostings;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long collectedPostingCount() {
+        return collectedPostings;
+    }
+
+    @Override
+    public long storageBytes() {
+        lock.readLock().lock();
+        try {
+            return log.end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.interrupt();
+        lock.writeLock().lock();
+        try {
+            log.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactPeriodically() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(COMPACTION_CHECK_MS);
+                if (needsCompaction()) {
+                    compact();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.warn("Failed to compact posting log " + file, e);
+            }
+        }
+    }
+
+    boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            return log.end > MIN_COMPACTION_BYTES && log.records > 2 * log.livePostings;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the live postings into a new log. Writers are only blocked while the records appended during
+     * the copy are replayed.
+     */
+    void compact() throws IOException {
+        long start = System.currentTimeMillis();
+        Log old;
+        Map<TryteHash, Long> lasts = new LinkedHashMap<>();
+        long copiedEnd;
+        lock.writeLock().lock();
+        try {
+            old = log;
+            for (Map.Entry<TryteHash, Entry> entry : old.keys.entrySet()) {
+                lasts.put(entry.getKey(), entry.getValue().last);
+            }
+            copiedEnd = old.end;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        File compactedFile = new File(file.getPath() + ".compact");
+        Log compacted = Log.create(compactedFile);
+        long[] key = new long[TryteHash.WORDS];
+        long[] head = new long[TryteHash.WORDS];
+        //records before copiedEnd are never modified: they are copied without lock
+        for (Map.Entry<TryteHash, Long> entry : lasts.entrySet()) {
+            entry.getKey().copyTo(key);
+            for (Map.Entry<String, Set<Integer>> postings : old.postings(entry.getValue()).entrySet()) {
+                TryteHash.pack(postings.getKey(), head);
+                for (int referenceIndex : postings.getValue()) {
+                    compacted.add(entry.getKey(), key, head, referenceIndex);
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            old.replayInto(compacted, copiedEnd);
+            compacted.force();
+            old.close();
+            Files.move(compactedFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log = compacted;
+            synchronized (this) {
+                sweepIterator = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.info("Posting log " + file + " compacted in " + (System.currentTimeMillis() - start) + "ms: "
+                + old.end + " -> " + compacted.end + " bytes.");
+    }
+
+    private static void putRecord(ByteBuffer buffer, byte op, long[] key, long[] head, int referenceIndex, long previous) {
+        buffer.put(op);
+        for (long word : key) {
+            buffer.putLong(word);
+        }
+        for (long word : head) {
+            buffer.putLong(word);
+        }
+        buffer.putInt(referenceIndex);
+        buffer.putLong(previous);
+    }
+
+    /**
+     * @return a 64 bits fingerprint of the posting (head, referenceIndex), never 0
+     */
+    private static long fingerprint(long[] head, int referenceIndex) {
+        long h = referenceIndex;
+        for (long word : head) {
+            h = h * 0x9E3779B97F4A7C15L + word;
+        }
+        //murmur3 finalizer
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Open addressing set of non zero longs.
+     */
+    private static class FingerprintSet {
+
+        private long[] table = new long[4];
+        private int size;
+
+        boolean add(long fingerprint) {
+            if (2 * (size + 1) > table.length) {
+                grow();
+            }
+            int mask = table.length - 1;
+            for (int i = mix(fingerprint) & mask; ; i = (i + 1) & mask) {
+                if (table[i] == fingerprint) {
+                    return false;
+                }
+                if (table[i] == 0) {
+                    table[i] = fingerprint;
+                    size++;
+                    return true;
+                }
+            }
+        }
+
+        void remove(long fingerprint) {
+            int mask = table.length - 1;
+            int i = mix(fingerprint) & mask;
+            while (table[i] != fingerprint) {
+                if (table[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            //backward shift deletion keeps the probe sequences intact
+            for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+                int home = mix(table[j]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    table[i] = table[j];
+                    i = j;
+                }
+            }
+            table[i] = 0;
+            size--;
+        }
+
+        private void grow() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            size = 0;
+            for (long fingerprint : old) {
+                if (fingerprint != 0) {
+                    add(fingerprint);
+                }
+            }
+        }
+
+        private static int mix(long fingerprint) {
+            return (int) (fingerprint ^ (fingerprint >>> 32));
+        }
+    }
+
+    private static class Entry {
+        private long last = -1;
+        private int count;
+        private final FingerprintSet fingerprints = new FingerprintSet();
+    }
+
+    /**
+     * One log file and its directory of keys. Mutations are guarded by the lock of the store.
+     */
+    private static class Log {
+
+        private final FileChannel channel;
+        private final Map<TryteHash, Entry> keys = new ConcurrentHashMap<>();
+        private long end = MAGIC.length;
+        private long records;
+        private long livePostings;
+
+        private Log(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        static Log create(File file) throws IOException {
+            Log log = new Log(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+            log.write(ByteBuffer.wrap(MAGIC), 0);
+            return log;
+        }
+
+        static Log open(File file) throws IOException {
+            if (!file.exists() || file.length() == 0) {
+                return create(file);
+            }
+            Log log = new Log(FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE));
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            log.read(magic, 0);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic.get(i) != MAGIC[i]) {
+                    log.close();
+                    throw new IOException(file + " is not a posting log");
+                }
+            }
+            log.end = log.replay(log, MAGIC.length, log.channel.size());
+            //drop a partially written record
+            log.channel.truncate(log.end);
+            return log;
+        }
+
+        void add(TryteHash hash, long[] key, long[] head, int referenceIndex) throws IOException {
+            Entry entry = keys.computeIfAbsent(hash, k -> new Entry());
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            putRecord(record, ADD, key, head, referenceIndex, entry.last);
+            entry.last = end;
+            entry.count++;
+            entry.fingerprints.add(fingerprint(head, referenceIndex));
+            livePostings++;
+            append(record);
+        }
+
+        /**
+         * Drop the posting (head, referenceIndex) in the chain of hash.
+         */
+        void drop(TryteHash hash, long[] key, long[] head, int referenceIndex) throws IOException {
+            Entry entry = keys.get(hash);
+            if (entry == null) {
+                return;
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            putRecord(record, DROP, key, head, referenceIndex, entry.last);
+            entry.last = end;
+            entry.count--;
+            entry.fingerprints.remove(fingerprint(head, referenceIndex));
+            livePostings--;
+            append(record);
+        }
+
+        boolean remove(TryteHash hash) throws IOException {
+            Entry entry = keys.remove(hash);
+            if (entry == null) {
+                return false;
+            }
+            long[] key = new long[TryteHash.WORDS];
+            hash.copyTo(key);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            putRecord(record, REMOVE, key, new long[TryteHash.WORDS], ANY_INDEX, -1);
+            livePostings -= entry.count;
+            append(record);
+            return true;
+        }
+
+        void append(ByteBuffer records) throws IOException {
+            records.flip();
+            int length = records.remaining();
+            write(records, end);
+            end += length;
+            this.records += length / RECORD_BYTES;
+        }
+
+        /**
+         * Walk the chain of records ending at last.
+         * @return the reference indexes by fragment head hash, most recent postings first, dropped postings skipped
+         */
+        Map<String, Set<Integer>> postings(long last) throws IOException {
+            Map<String, Set<Integer>> ret = new LinkedHashMap<>();
+            Map<String, Set<Integer>> dropped = new HashMap<>();
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            long[] head = new long[TryteHash.WORDS];
+            for (long offset = last; offset >= 0; ) {
+                record.clear();
+                read(record, offset);
+                record.flip();
+                byte op = record.get(0);
+                record.position(1 + KEY_BYTES);
+                for (int i = 0; i < TryteHash.WORDS; i++) {
+                    head[i] = record.getLong();
+                }
+                int referenceIndex = record.getInt();
+                offset = record.getLong();
+                String headHash = TryteHash.unpack(head);
+                if (op == DROP) {
+                    //the posting older than the DROP record is dead
+                    dropped.computeIfAbsent(headHash, k -> new HashSet<>()).add(referenceIndex);
+                } else if (!dropped.getOrDefault(headHash, Collections.emptySet()).contains(referenceIndex)) {
+                    ret.computeIfAbsent(headHash, k -> new LinkedHashSet<>()).add(referenceIndex);
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * Apply the records of this log from position from to target.
+         */
+        void replayInto(Log target, long from) throws IOException {
+            replay(target, from, end);
+        }
+
+        /**
+         * @return the position after the last complete record
+         */
+        private long replay(Log target, long from, long to) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 4096);
+            long[] key = new long[TryteHash.WORDS];
+            long[] head = new long[TryteHash.WORDS];
+            long position = from;
+            while (position + RECORD_BYTES <= to) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), (to - position) / RECORD_BYTES * RECORD_BYTES));
+                read(buffer, position);
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_BYTES) {
+                    byte op = buffer.get();
+                    for (int i = 0; i < TryteHash.WORDS; i++) {
+                        key[i] = buffer.getLong();
+                    }
+                    for (int i = 0; i < TryteHash.WORDS; i++) {
+                        head[i] = buffer.getLong();
+                    }
+                    int referenceIndex = buffer.getInt();
+                    buffer.getLong();
+                    TryteHash hash = TryteHash.of(TryteHash.unpack(key));
+                    if (op == ADD) {
+                        if (target == this) {
+                            Entry entry = keys.computeIfAbsent(hash, k -> new Entry());
+                            entry.last = position;
+                            //logs written before duplicates were skipped may hold the same posting twice
+                            if (entry.fingerprints.add(fingerprint(head, referenceIndex))) {
+                                entry.count++;
+                                livePostings++;
+                            }
+                            records++;
+                        } else {
+                            target.add(hash, key, head, referenceIndex);
+                        }
+                    } else if (op == DROP) {
+                        if (target == this) {
+                            Entry entry = keys.get(hash);
+                            if (entry != null) {
+                                entry.last = position;
+                                entry.count--;
+                                entry.fingerprints.remove(fingerprint(head, referenceIndex));
+                                livePostings--;
+                            }
+                            records++;
+                        } else {
+                            target.drop(hash, key, head, referenceIndex);
+                        }
+                    } else if (op == REMOVE) {
+                        if (target == this) {
+                            Entry entry = keys.remove(hash);
+                            if (entry != null) {
+                                livePostings -= entry.count;
+                            }
+                            records++;
+                        } else {
+                            target.remove(hash);
+                        }
+                    } else {
+                        return position;
+                    }
+                    position += RECORD_BYTES;
+                }
+            }
+            return position;
+        }
+
+        void force() throws IOException {
+            channel.force(false);
+        }
+
+        void close() {
+            try {
+                if (channel.isOpen()) {
+                    channel.force(false);
+                    channel.close();
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close posting log", e);
+            }
+        }
+
+        private void write(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        private void read(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of posting log");
+                }
+                position += read;
+            }
+        }
+    }
+}
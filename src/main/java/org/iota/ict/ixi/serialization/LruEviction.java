@@ -0,0 +1,57 @@
+package org.iota.ict.ixi.serialization;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Evicts the least recently used key.
+ */
+class LruEviction<K> implements Eviction<K> {
+
+    //access order: the eldest key comes first
+    final LinkedHashMap<K, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public void onInsert(K key) {
+        order.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public void onAccess(K key) {
+        order.get(key);
+    }
+
+    @Override
+    public void onRemove(K key) {
+        order.remove(key);
+    }
+
+    @Override
+    public K victim(Predicate<K> pinned) {
+        List<K> skipped = new ArrayList<>();
+        K victim = null;
+        Iterator<K> iterator = order.keySet().iterator();
+        while (iterator.hasNext()) {
+            K key = iterator.next();
+            if (!pinned.test(key)) {
+                iterator.remove();
+                victim = key;
+                break;
+            }
+            skipped.add(key);
+        }
+        //pinned keys move to the end, so that the next call does not scan them again
+        for (K key : skipped) {
+            order.get(key);
+        }
+        return victim;
+    }
+
+    @Override
+    public int size() {
+        return order.size();
+    }
+}
@@ -0,0 +1,95 @@
+package org.iota.ict.ixi.serialization;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free registry of counters, latency histograms and gauges.
+ *
+ * Counters and histograms are created on first use and should be kept in a field by hot code paths.
+ * Gauges are read when a snapshot is taken.
+ */
+class Metrics {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * @return the current value of every metric, sorted by name.
+     * Histograms are reported as name.count, name.mean, name.p50, name.p99 and name.max.
+     */
+    Map<String, Long> snapshot() {
+        Map<String, Long> ret = new TreeMap<>();
+        counters.forEach((name, counter) -> ret.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> ret.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> histogram.snapshot(name, ret));
+        return ret;
+    }
+
+    /**
+     * Histogram with power of two buckets: bucket i counts the values v with 2^(i-1) <= v < 2^i.
+     * Percentiles are reported as the upper bound of their bucket.
+     */
+    static class Histogram {
+
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long value) {
+            value = Math.max(0, value);
+            buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        private void snapshot(String name, Map<String, Long> into) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            into.put(name + ".count", total);
+            into.put(name + ".mean", total == 0 ? 0 : sum.sum() / total);
+            into.put(name + ".p50", percentile(counts, total, 50));
+            into.put(name + ".p99", percentile(counts, total, 99));
+            into.put(name + ".max", max.get());
+        }
+
+        private static long percentile(long[] counts, long total, int percent) {
+            long rank = (total * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return i == 0 ? 0 : (1L << i) - 1;
+                }
+            }
+            return 0;
+        }
+    }
+}
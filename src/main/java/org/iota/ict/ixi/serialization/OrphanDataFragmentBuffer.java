@@ -0,0 +1,123 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.model.transaction.Transaction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parks the head transactions of DataFragments received before their ClassFragment.
+ * Parked fragments are handed back as soon as the ClassFragment is persisted.
+ *
+ * The buffer is bounded: when full, the oldest parked fragment is evicted.
+ * Fragments parked for longer than the time-to-live are dropped.
+ */
+class OrphanDataFragmentBuffer {
+
+    private final int capacity;
+    private final long timeToLiveMs;
+
+    private final Map<String, List<Parked>> byClassHash = new HashMap<>();
+    //parking order, used to evict and expire. Replayed entries are removed lazily.
+    private final ArrayDeque<Parked> parkingOrder = new ArrayDeque<>();
+    private int size;
+
+    private long parked;
+    private long replayed;
+    private long expired;
+    private long evicted;
+
+    OrphanDataFragmentBuffer(int capacity, long timeToLiveMs) {
+        this.capacity = capacity;
+        this.timeToLiveMs = timeToLiveMs;
+    }
+
+    synchronized void park(String classHash, Transaction fragmentHead) {
+        if (capacity <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        expire(now);
+        while (size >= capacity) {
+            Parked oldest = parkingOrder.poll();
+            if (!oldest.removed) {
+                remove(oldest);
+                evicted++;
+            }
+        }
+        Parked entry = new Parked(classHash, fragmentHead, now);
+        byClassHash.computeIfAbsent(classHash, k -> new ArrayList<>(1)).add(entry);
+        parkingOrder.add(entry);
+        size++;
+        parked++;
+    }
+
+    /**
+     * @return the head transactions parked for classHash (removed from the buffer), in parking order
+     */
+    synchronized List<Transaction> replay(String classHash) {
+        expire(System.currentTimeMillis());
+        List<Parked> entries = byClassHash.remove(classHash);
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        List<Transaction> ret = new ArrayList<>(entries.size());
+        for (Parked entry : entries) {
+            entry.removed = true;
+            ret.add(entry.fragmentHead);
+        }
+        size -= entries.size();
+        replayed += entries.size();
+        return ret;
+    }
+
+    private void expire(long now) {
+        Parked oldest = parkingOrder.peek();
+        while (oldest != null && (oldest.removed || now - oldest.parkedAt > timeToLiveMs)) {
+            parkingOrder.poll();
+            if (!oldest.removed) {
+                remove(oldest);
+                expired++;
+            }
+            oldest = parkingOrder.peek();
+        }
+    }
+
+    private void remove(Parked entry) {
+        entry.removed = true;
+        List<Parked> entries = byClassHash.get(entry.classHash);
+        entries.remove(entry);
+        if (entries.isEmpty()) {
+            byClassHash.remove(entry.classHash);
+        }
+        size--;
+    }
+
+    synchronized Map<String, Long> getStatistics() {
+        Map<String, Long> ret = new LinkedHashMap<>();
+        ret.put("size", (long) size);
+        ret.put("parked", parked);
+        ret.put("replayed", replayed);
+        ret.put("expired", expired);
+        ret.put("evicted", evicted);
+        return ret;
+    }
+
+    private static class Parked {
+        private final String classHash;
+        private final Transaction fragmentHead;
+        private final long parkedAt;
+        private boolean removed;
+
+        Parked(String classHash, Transaction fragmentHead, long parkedAt) {
+            this.classHash = classHash;
+            this.fragmentHead = fragmentHead;
+            this.parkedAt = parkedAt;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.iota.ict.ixi.serialization.model.PayloadStore;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * On-disk {@link PayloadStore}: a log of DataFragment payloads split in memory-mapped segment files.
+ *
+ * Record layout (trytes as ASCII): [byte marker][head hash (81)][class hash (81)][int message length]
+ * [int reference count][message][references (81 each)]. The marker is written last, so that a record
+ * interrupted by a crash is ignored (and overwritten) when the segments are scanned at start.
+ *
+ * Only the location of each payload (segment, offset) is held in memory. Once the segments exceed the
+ * capacity, the oldest segment is deleted with its payloads.
+ */
+class PayloadLog implements PayloadStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PayloadLog.class);
+
+    static final int SEGMENT_BYTES = 64 << 20;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("payload-(\\d+)\\.seg");
+    private static final byte RECORD = 1;
+    private static final int HASH_LENGTH = TryteHash.TRYTE_LENGTH;
+    private static final int HEADER_BYTES = 1 + 2 * HASH_LENGTH + 4 + 4;
+
+    private final File directory;
+    private final int segmentBytes;
+    private final long capacityBytes;
+    //segment id << 32 | offset of the record
+    private final Map<TryteHash, Long> locations = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+
+    /**
+     * @param capacityBytes disk space after which the oldest segments are dropped, 0 for no limit
+     */
+    PayloadLog(File directory, int segmentBytes, long capacityBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.capacityBytes = capacityBytes;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        File[] files = directory.listFiles();
+        List<Integer> ids = new ArrayList<>();
+        for (File file : files == null ? new File[0] : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+            if (matcher.matches()) {
+                ids.add(Integer.parseInt(matcher.group(1)));
+            }
+        }
+        ids.sort(null);
+        for (int id : ids) {
+            Segment segment = new Segment(id, segmentFile(id), Math.max(segmentBytes, (int) segmentFile(id).length()));
+            segments.put(id, segment);
+            segment.scan();
+            active = segment;
+        }
+        if (active == null) {
+            roll();
+        }
+        LOGGER.info("Payload log " + directory + " opened: " + locations.size() + " payloads in " + segments.size() + " segments.");
+    }
+
+    /**
+     * Store the message and references of dataFragment, unless already stored or its transactions are gone.
+     * @return true when the payload has been stored
+     */
+    synchronized boolean append(DataFragment dataFragment) throws IOException {
+        TryteHash head = TryteHash.of(dataFragment.getHeadTransactionHash());
+        if (locations.containsKey(head) || dataFragment.getHeadTransaction() == null) {
+            return false;
+        }
+        //a partial chain would store padding in place of the missing trytes
+        String message = dataFragment.getCompleteMessageTrytes();
+        if (message == null) {
+            LOGGER.debug("Payload of " + head + " is not complete, not stored");
+            return false;
+        }
+        int refCount = dataFragment.getClassFragment().getRefCount();
+        int length = HEADER_BYTES + message.length() + refCount * HASH_LENGTH;
+        if (length > segmentBytes) {
+            LOGGER.debug("Payload of " + head + " is larger than a segment, not stored");
+            return false;
+        }
+        if (active.position + length > active.buffer.capacity()) {
+            roll();
+        }
+        ByteBuffer buffer = active.buffer.duplicate();
+        int offset = active.position;
+        buffer.position(offset + 1);
+        putTrytes(buffer, dataFragment.getHeadTransactionHash());
+        putTrytes(buffer, dataFragment.getClassFragment().getClassHash());
+        buffer.putInt(message.length());
+        buffer.putInt(refCount);
+        putTrytes(buffer, message);
+        for (int i = 0; i < refCount; i++) {
+            putTrytes(buffer, dataFragment.getReference(i));
+        }
+        buffer.put(offset, RECORD);
+        active.position += length;
+        active.keys.add(head);
+        locations.put(head, location(active.id, offset));
+        return true;
+    }
+
+    @Override
+    public String loadMessage(String headTransactionHash) {
+        ByteBuffer record = record(headTransactionHash);
+        if (record == null) {
+            return null;
+        }
+        int messageLength = record.getInt(record.position() + 1 + 2 * HASH_LENGTH);
+        record.position(record.position() + HEADER_BYTES);
+        return getTrytes(record, messageLength);
+    }
+
+    @Override
+    public String loadReference(String headTransactionHash, int index) {
+        ByteBuffer record = record(headTransactionHash);
+        if (record == null) {
+            return null;
+        }
+        int messageLength = record.getInt(record.position() + 1 + 2 * HASH_LENGTH);
+        int refCount = record.getInt(record.position() + 1 + 2 * HASH_LENGTH + 4);
+        if (index < 0 || index >= refCount) {
+            return null;
+        }
+        record.position(record.position() + HEADER_BYTES + messageLength + index * HASH_LENGTH);
+        return getTrytes(record, HASH_LENGTH);
+    }
+
+    /**
+     * @return the class hash of the stored DataFragment with head transaction headTransactionHash, null when not stored
+     */
+    String loadClassHash(String headTransactionHash) {
+        ByteBuffer record = record(headTransactionHash);
+        if (record == null) {
+            return null;
+        }
+        record.position(record.position() + 1 + HASH_LENGTH);
+        return getTrytes(record, HASH_LENGTH);
+    }
+
+    boolean contains(String headTransactionHash) {
+        return TryteHash.isValid(headTransactionHash) && locations.containsKey(TryteHash.of(headTransactionHash));
+    }
+
+    int size() {
+        return locations.size();
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    long storageBytes() {
+        long ret = 0;
+        for (Segment segment : segments.values()) {
+            ret += segment.position;
+        }
+        return ret;
+    }
+
+    synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        locations.clear();
+    }
+
+    /**
+     * @return a buffer positioned on the record of headTransactionHash, null when not stored
+     */
+    private ByteBuffer record(String headTransactionHash) {
+        if (!TryteHash.isValid(headTransactionHash)) {
+            return null;
+        }
+        Long location = locations.get(TryteHash.of(headTransactionHash));
+        Segment segment = location == null ? null : segments.get((int) (location >>> 32));
+        if (segment == null) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position((int) (long) location);
+        return buffer;
+    }
+
+    private void roll() throws IOException {
+        int id = active == null ? 0 : active.id + 1;
+        if (active != null) {
+            active.buffer.force();
+        }
+        active = new Segment(id, segmentFile(id), segmentBytes);
+        segments.put(id, active);
+        while (capacityBytes > 0 && segments.size() > 1 && (long) segments.size() * segmentBytes > capacityBytes) {
+            Segment oldest = segments.pollFirstEntry().getValue();
+            for (TryteHash key : oldest.keys) {
+                locations.remove(key);
+            }
+            oldest.close();
+            if (!oldest.file.delete()) {
+                LOGGER.warn("Cannot delete payload segment " + oldest.file);
+            }
+        }
+    }
+
+    private File segmentFile(int id) {
+        return new File(directory, String.format("payload-%08d.seg", id));
+    }
+
+    private static long location(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static void putTrytes(ByteBuffer buffer, String trytes) {
+        for (int i = 0; i < trytes.length(); i++) {
+            buffer.put((byte) trytes.charAt(i));
+        }
+    }
+
+    private static String getTrytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private class Segment {
+
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final List<TryteHash> keys = new ArrayList<>();
+        private volatile int position;
+
+        Segment(int id, File file, int bytes) throws IOException {
+            this.id = id;
+            this.file = file;
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+
+        /**
+         * Index the complete records of the segment.
+         */
+        void scan() {
+            ByteBuffer view = buffer.duplicate();
+            while (position + HEADER_BYTES <= view.capacity() && view.get(position) == RECORD) {
+                int messageLength = view.getInt(position + 1 + 2 * HASH_LENGTH);
+                int refCount = view.getInt(position + 1 + 2 * HASH_LENGTH + 4);
+                int length = HEADER_BYTES + messageLength + refCount * HASH_LENGTH;
+                if (messageLength < 0 || refCount < 0 || position + length > view.capacity()) {
+                    break;
+                }
+                view.position(position + 1);
+                String head = getTrytes(view, HASH_LENGTH);
+                if (!TryteHash.isValid(head)) {
+                    break;
+                }
+                TryteHash key = TryteHash.of(head);
+                keys.add(key);
+                locations.put(key, location(id, position));
+                position += length;
+            }
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close payload segment " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage of the postings of Persistence: for each 81 trytes hash (a referenced transaction or a class hash),
+ * the DataFragments associated to it, with the index of the reference holding the hash.
+ *
+ * Implementations are thread safe.
+ * @see StorageType
+ */
+interface PostingStore {
+
+    /**
+     * Reference index of the postings not bound to a reference.
+     */
+    int ANY_INDEX = -1;
+
+    default void add(String hash, DataFragment fragment) {
+        addAll(hash, Collections.singletonList(fragment), null);
+    }
+
+    default void add(String hash, DataFragment fragment, int referenceIndex) {
+        addAll(hash, Collections.singletonList(fragment), new int[]{referenceIndex});
+    }
+
+    default void addAll(String hash, List<DataFragment> fragments) {
+        addAll(hash, fragments, null);
+    }
+
+    /**
+     * @param referenceIndexes the reference index of each fragment, null for {@link #ANY_INDEX}
+     * @throws IllegalArgumentException when hash is not an 81 trytes hash
+     */
+    void addAll(String hash, List<DataFragment> fragments, int[] referenceIndexes);
+
+    default Set<DataFragment> get(String hash) {
+        return get(hash, ANY_INDEX);
+    }
+
+    default Set<DataFragment> get(TryteHash hash) {
+        return get(hash, ANY_INDEX);
+    }
+
+    /**
+     * @param referenceIndex the reference holding hash, {@link #ANY_INDEX} for any reference
+     * @return a snapshot of the DataFragments associated to hash at referenceIndex (empty when none or invalid)
+     */
+    Set<DataFragment> get(String hash, int referenceIndex);
+
+    Set<DataFragment> get(TryteHash hash, int referenceIndex);
+
+    /**
+     * Remove hash and its postings.
+     * @return true when hash was stored
+     */
+    boolean remove(String hash);
+
+    /**
+     * Sweep a bounded part of the store, starting at cursor: postings of DataFragments that are gone from the
+     * Ict are dropped, hashes left without postings are removed (and added to removed) and the remaining hashes
+     * are added to live.
+     * @return the cursor to resume from, 0 once the whole store has been swept
+     */
+    int sweep(int cursor, int budget, Collection<String> live, Collection<String> removed);
+
+    /**
+     * @return a snapshot of the stored hashes
+     */
+    List<String> referencedHashes();
+
+    /**
+     * @return a view of the store to be visited without blocking the writers for long
+     */
+    Snapshot snapshot();
+
+    int size();
+
+    long postingCount();
+
+    long collectedPostingCount();
+
+    /**
+     * @return the memory or disk space held by the postings, in bytes
+     */
+    long storageBytes();
+
+    /**
+     * Release the resources held by the store. Durable stores keep their content.
+     */
+    void close();
+
+    interface Snapshot {
+
+        int size();
+
+        void visit(Visitor visitor) throws IOException;
+    }
+
+    interface Visitor {
+
+        /**
+         * Called for each hash, followed by postingCount calls to {@link #posting(DataFragment, int)}.
+         */
+        void key(String hash, int postingCount) throws IOException;
+
+        void posting(DataFragment fragment, int referenceIndex) throws IOException;
+    }
+}
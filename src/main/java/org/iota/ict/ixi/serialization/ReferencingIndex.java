@@ -0,0 +1,579 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Off-heap index of the DataFragments associated to an 81 trytes hash: the DataFragments referencing
+ * each transaction hash, or the DataFragments of each class hash.
+ *
+ * Hashes are packed into 7 longs (see {@link TryteHash}) and stored in an open-addressing
+ * table held in a direct buffer. Each slot points to a linked list of postings (fragment id, next posting,
+ * reference index), held in a second direct buffer. Fragment ids index a table of DataFragments, released when
+ * no posting refers to them anymore. An edge costs 12 off-heap bytes instead of a String key and a HashSet entry.
+ *
+ * The reference index records at which reference of the DataFragment the hash appears, so that lookups for
+ * a given reference do not read the DataFragment transactions. It is {@link #ANY_INDEX} for other keys.
+ *
+ * Lookups are optimistic reads of a {@link StampedLock}: they do not wait for the writers (persist stage, warm start,
+ * cleaner), and fall back to the read lock only when a write raced with them. The cleaner takes the write lock for
+ * {@link #SWEEP_CHUNK} slots at a time.
+ * This is the {@link StorageType#MEMORY} posting store.
+ */
+class ReferencingIndex implements PostingStore {
+
+    private static final int KEY_LONGS = TryteHash.WORDS;
+
+    //slot: KEY_LONGS longs, int head posting, int posting count
+    private static final int SLOT_BYTES = 64;
+    private static final int HEAD_OFFSET = KEY_LONGS * 8;
+    private static final int SIZE_OFFSET = HEAD_OFFSET + 4;
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    //posting: int fragment id, int next posting, int reference index (postings are numbered from 1, 0 ends the list)
+    private static final int POSTING_BYTES = 12;
+
+    //slots swept under one acquisition of the write lock
+    static final int SWEEP_CHUNK = 64;
+
+    private final StampedLock lock = new StampedLock();
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int keys;
+    private int deleted;
+
+    private ByteBuffer postings;
+    private int nextPosting = 1;
+    private int freePostings;
+    private long livePostings;
+    private long collectedPostings;
+
+    private DataFragment[] fragments = new DataFragment[1024];
+    private int[] fragmentRefs = new int[1024];
+    private final Map<String, Integer> fragmentIds = new HashMap<>();
+    private final List<Integer> freeFragmentIds = new ArrayList<>();
+    private int nextFragmentId;
+
+    private final long[] key = new long[KEY_LONGS];
+
+    ReferencingIndex() {
+        this(1024);
+    }
+
+    ReferencingIndex(int initialCapacity) {
+        capacity = Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1;
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        postings = ByteBuffer.allocateDirect(capacity * POSTING_BYTES);
+    }
+
+    @Override
+    public void addAll(String referencedHash, List<DataFragment> referencing, int[] referenceIndexes) {
+        if (referencing.isEmpty()) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (!TryteHash.pack(referencedHash, key)) {
+                throw new IllegalArgumentException("'" + referencedHash + "' is not an 81 trytes hash");
+            }
+            int slot = findOrInsert(key);
+            for (int i = 0; i < referencing.size(); i++) {
+                DataFragment fragment = referencing.get(i);
+                int referenceIndex = referenceIndexes == null ? ANY_INDEX : referenceIndexes[i];
+                Integer existing = fragmentIds.get(fragment.getHeadTransactionHash());
+                if (existing != null && contains(slot, existing, referenceIndex)) {
+                    continue;
+                }
+                int id = existing != null ? existing : newFragmentId(fragment);
+                int posting = allocatePosting();
+                postings.putInt(postingOffset(posting), id);
+                postings.putInt(postingOffset(posting) + 4, slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET));
+                postings.putInt(postingOffset(posting) + 8, referenceIndex);
+                slots.putInt(slot * SLOT_BYTES + HEAD_OFFSET, posting);
+                slots.putInt(slot * SLOT_BYTES + SIZE_OFFSET, slots.getInt(slot * SLOT_BYTES + SIZE_OFFSET) + 1);
+                fragmentRefs[id]++;
+                livePostings++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Set<DataFragment> get(String referencedHash, int referenceIndex) {
+        long[] key = new long[KEY_LONGS];
+        if (referencedHash == null || !TryteHash.pack(referencedHash, key)) {
+            return Collections.emptySet();
+        }
+        return get(key, referenceIndex);
+    }
+
+    @Override
+    public Set<DataFragment> get(TryteHash referencedHash, int referenceIndex) {
+        long[] key = new long[KEY_LONGS];
+        referencedHash.copyTo(key);
+        return get(key, referenceIndex);
+    }
+
+    private Set<DataFragment> get(long[] key, int referenceIndex) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Set<DataFragment> ret = collect(slots, capacity, postings, nextPosting, fragments, key, referenceIndex);
+                if (ret != null && lock.validate(stamp)) {
+                    return ret;
+                }
+            } catch (RuntimeException e) {
+                //a writer moved the buffers while they were read, read them again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return collect(slots, capacity, postings, nextPosting, fragments, key, referenceIndex);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Read the postings of key. The arguments may be torn by a concurrent writer: walks are bounded and null is
+     * returned when the state read is inconsistent, the caller validates the result.
+     */
+    private static Set<DataFragment> collect(ByteBuffer slots, int capacity, ByteBuffer postings, int postingLimit,
+                                             DataFragment[] fragments, long[] key, int referenceIndex) {
+        int slot = find(slots, capacity, key);
+        if (slot < 0) {
+            return Collections.emptySet();
+        }
+        int size = slots.getInt(slot * SLOT_BYTES + SIZE_OFFSET);
+        Set<DataFragment> ret = new HashSet<>(Math.max(0, Math.min(size, postingLimit)) * 2);
+        int steps = 0;
+        for (int p = slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET); p != 0; p = postings.getInt(postingOffset(p) + 4)) {
+            if (++steps > postingLimit) {
+                return null;
+            }
+            if (referenceIndex == ANY_INDEX || postings.getInt(postingOffset(p) + 8) == referenceIndex) {
+                DataFragment fragment = fragments[postings.getInt(postingOffset(p))];
+                if (fragment == null) {
+                    return null;
+                }
+                ret.add(fragment);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean remove(String referencedHash) {
+        long stamp = lock.writeLock();
+        try {
+            if (!TryteHash.pack(referencedHash, key)) {
+                return false;
+            }
+            int slot = find(key);
+            if (slot < 0) {
+                return false;
+            }
+            int p = slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET);
+            while (p != 0) {
+                int next = postings.getInt(postingOffset(p) + 4);
+                releaseFragment(postings.getInt(postingOffset(p)));
+                postings.putInt(postingOffset(p) + 4, freePostings);
+                freePostings = p;
+                livePostings--;
+                p = next;
+            }
+            slots.putInt(slot * SLOT_BYTES + HEAD_OFFSET, DELETED);
+            slots.putInt(slot * SLOT_BYTES + SIZE_OFFSET, 0);
+            keys--;
+            deleted++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public List<String> referencedHashes() {
+        long stamp = lock.readLock();
+        try {
+            List<String> ret = new ArrayList<>(keys);
+            long[] key = new long[KEY_LONGS];
+            for (int slot = 0; slot < capacity; slot++) {
+                if (slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET) > 0) {
+                    readKey(slots, slot, key);
+                    ret.add(TryteHash.unpack(key));
+                }
+            }
+            return ret;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Sweep at most budget keys: postings of DataFragments whose head transaction has been garbage collected
+     * are unlinked. The write lock is released every {@link #SWEEP_CHUNK} slots.
+     */
+    @Override
+    public int sweep(int cursor, int budget, Collection<String> live, Collection<String> removed) {
+        long[] key = new long[KEY_LONGS];
+        int slot = cursor;
+        int checked = 0;
+        int sweptCapacity = 0;
+        boolean restarted = false;
+        while (checked < budget) {
+            long stamp = lock.writeLock();
+            try {
+                if (slot >= capacity) {
+                    slot = 0;
+                }
+                //a rehash moved the keys between two chunks: start the pass again so that none is skipped
+                if (sweptCapacity != 0 && sweptCapacity != capacity && !restarted) {
+                    slot = 0;
+                    restarted = true;
+                }
+                sweptCapacity = capacity;
+                for (int end = Math.min(capacity, slot + SWEEP_CHUNK); slot < end && checked < budget; slot++) {
+                    if (slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET) <= 0) {
+                        continue;
+                    }
+                    checked++;
+                    purgeCollected(slot);
+                    readKey(slots, slot, key);
+                    if (slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET) == 0) {
+                        slots.putInt(slot * SLOT_BYTES + HEAD_OFFSET, DELETED);
+                        keys--;
+                        deleted++;
+                        removed.add(TryteHash.unpack(key));
+                    } else {
+                        live.add(TryteHash.unpack(key));
+                    }
+                }
+                if (slot >= capacity) {
+                    return 0;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        return slot;
+    }
+
+    private void purgeCollected(int slot) {
+        int previous = 0;
+        int p = slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET);
+        while (p != 0) {
+            int next = postings.getInt(postingOffset(p) + 4);
+            int id = postings.getInt(postingOffset(p));
+            if (fragments[id].getHeadTransaction() == null) {
+                if (previous == 0) {
+                    slots.putInt(slot * SLOT_BYTES + HEAD_OFFSET, next);
+                } else {
+                    postings.putInt(postingOffset(previous) + 4, next);
+                }
+                slots.putInt(slot * SLOT_BYTES + SIZE_OFFSET, slots.getInt(slot * SLOT_BYTES + SIZE_OFFSET) - 1);
+                releaseFragment(id);
+                postings.putInt(postingOffset(p) + 4, freePostings);
+                freePostings = p;
+                livePostings--;
+                collectedPostings++;
+            } else {
+                previous = p;
+            }
+            p = next;
+        }
+    }
+
+    /**
+     * Copy the index, holding the read lock only while the buffers are copied.
+     */
+    @Override
+    public Snapshot snapshot() {
+        long stamp = lock.readLock();
+        try {
+            return new Copy(copy(slots, slots.capacity()), copy(postings, postingOffset(nextPosting)),
+                    Arrays.copyOf(fragments, nextFragmentId), capacity, keys);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer, int length) {
+        ByteBuffer source = buffer.duplicate();
+        source.clear().limit(length);
+        ByteBuffer copy = ByteBuffer.allocateDirect(Math.max(1, length));
+        copy.put(source);
+        copy.clear();
+        return copy;
+    }
+
+    /**
+     * Immutable copy of a ReferencingIndex, to be visited without blocking the writers.
+     */
+    private static class Copy implements Snapshot {
+
+        private final ByteBuffer slots;
+        private final ByteBuffer postings;
+        private final DataFragment[] fragments;
+        private final int capacity;
+        private final int keys;
+
+        private Copy(ByteBuffer slots, ByteBuffer postings, DataFragment[] fragments, int capacity, int keys) {
+            this.slots = slots;
+            this.postings = postings;
+            this.fragments = fragments;
+            this.capacity = capacity;
+            this.keys = keys;
+        }
+
+        @Override
+        public int size() {
+            return keys;
+        }
+
+        @Override
+        public void visit(Visitor visitor) throws IOException {
+            long[] key = new long[KEY_LONGS];
+            for (int slot = 0; slot < capacity; slot++) {
+                int head = slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET);
+                if (head <= 0) {
+                    continue;
+                }
+                readKey(slots, slot, key);
+                visitor.key(TryteHash.unpack(key), slots.getInt(slot * SLOT_BYTES + SIZE_OFFSET));
+                for (int p = head; p != 0; p = postings.getInt(postingOffset(p) + 4)) {
+                    visitor.posting(fragments[postings.getInt(postingOffset(p))], postings.getInt(postingOffset(p) + 8));
+                }
+            }
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < slots.capacity(); i++) {
+                slots.put(i, (byte) 0);
+            }
+            keys = 0;
+            deleted = 0;
+            nextPosting = 1;
+            freePostings = 0;
+            livePostings = 0;
+            fragments = new DataFragment[1024];
+            fragmentRefs = new int[1024];
+            fragmentIds.clear();
+            freeFragmentIds.clear();
+            nextFragmentId = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return keys;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long postingCount() {
+        long stamp = lock.readLock();
+        try {
+            return livePostings;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the number of postings unlinked by {@link #sweep} because their DataFragment was collected
+     */
+    @Override
+    public long collectedPostingCount() {
+        long stamp = lock.readLock();
+        try {
+            return collectedPostings;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the off-heap memory held by the index, in bytes
+     */
+    @Override
+    public long storageBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) slots.capacity() + postings.capacity();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    private boolean contains(int slot, int fragmentId, int referenceIndex) {
+        for (int p = slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET); p != 0; p = postings.getInt(postingOffset(p) + 4)) {
+            if (postings.getInt(postingOffset(p)) == fragmentId && postings.getInt(postingOffset(p) + 8) == referenceIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int newFragmentId(DataFragment fragment) {
+        int id;
+        if (!freeFragmentIds.isEmpty()) {
+            id = freeFragmentIds.remove(freeFragmentIds.size() - 1);
+        } else {
+            id = nextFragmentId++;
+            if (id == fragments.length) {
+                fragments = Arrays.copyOf(fragments, id * 2);
+                fragmentRefs = Arrays.copyOf(fragmentRefs, id * 2);
+            }
+        }
+        fragments[id] = fragment;
+        fragmentIds.put(fragment.getHeadTransactionHash(), id);
+        return id;
+    }
+
+    private void releaseFragment(int id) {
+        if (--fragmentRefs[id] == 0) {
+            fragmentIds.remove(fragments[id].getHeadTransactionHash());
+            fragments[id] = null;
+            freeFragmentIds.add(id);
+        }
+    }
+
+    private int allocatePosting() {
+        if (freePostings != 0) {
+            int p = freePostings;
+            freePostings = postings.getInt(postingOffset(p) + 4);
+            return p;
+        }
+        if (postingOffset(nextPosting) + POSTING_BYTES > postings.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(postings.capacity() * 2);
+            postings.clear();
+            grown.put(postings);
+            grown.clear();
+            postings = grown;
+        }
+        return nextPosting++;
+    }
+
+    private static int postingOffset(int posting) {
+        return (posting - 1) * POSTING_BYTES;
+    }
+
+    private int find(long[] key) {
+        return find(slots, capacity, key);
+    }
+
+    private static int find(ByteBuffer slots, int capacity, long[] key) {
+        int mask = capacity - 1;
+        int slot = TryteHash.mix(key) & mask;
+        for (int probes = 0; probes < capacity; probes++, slot = (slot + 1) & mask) {
+            int head = slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET);
+            if (head == EMPTY) {
+                return -1;
+            }
+            if (head != DELETED && keyEquals(slots, slot, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findOrInsert(long[] key) {
+        int slot = find(key);
+        if (slot >= 0) {
+            return slot;
+        }
+        if ((keys + deleted + 1) * 10 > capacity * 7) {
+            rehash();
+        }
+        int mask = capacity - 1;
+        slot = TryteHash.mix(key) & mask;
+        while (slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET) > 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET) == DELETED) {
+            deleted--;
+        }
+        for (int i = 0; i < KEY_LONGS; i++) {
+            slots.putLong(slot * SLOT_BYTES + i * 8, key[i]);
+        }
+        //an empty list (head 0) would mark the slot as empty: the caller adds the first posting right away
+        slots.putInt(slot * SLOT_BYTES + HEAD_OFFSET, 0);
+        slots.putInt(slot * SLOT_BYTES + SIZE_OFFSET, 0);
+        keys++;
+        return slot;
+    }
+
+    private void rehash() {
+        int newCapacity = capacity;
+        while ((keys + 1) * 2 > newCapacity) {
+            newCapacity *= 2;
+        }
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+        capacity = newCapacity;
+        deleted = 0;
+        int mask = capacity - 1;
+        long[] key = new long[KEY_LONGS];
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            int head = old.getInt(oldSlot * SLOT_BYTES + HEAD_OFFSET);
+            if (head <= 0) {
+                continue;
+            }
+            readKey(old, oldSlot, key);
+            int slot = TryteHash.mix(key) & mask;
+            while (slots.getInt(slot * SLOT_BYTES + HEAD_OFFSET) != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            for (int i = 0; i < SLOT_BYTES; i += 4) {
+                slots.putInt(slot * SLOT_BYTES + i, old.getInt(oldSlot * SLOT_BYTES + i));
+            }
+        }
+    }
+
+    private static boolean keyEquals(ByteBuffer slots, int slot, long[] key) {
+        for (int i = 0; i < KEY_LONGS; i++) {
+            if (slots.getLong(slot * SLOT_BYTES + i * 8) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void readKey(ByteBuffer slots, int slot, long[] key) {
+        for (int i = 0; i < KEY_LONGS; i++) {
+            key[i] = slots.getLong(slot * SLOT_BYTES + i * 8);
+        }
+    }
+}
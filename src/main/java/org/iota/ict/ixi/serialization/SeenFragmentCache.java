@@ -0,0 +1,117 @@
+package org.iota.ict.ixi.serialization;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the head transaction hashes of the fragments already ingested, in a fixed amount of memory.
+ *
+ * A Bloom filter answers most lookups for fragments never seen before. When it reports a possible match,
+ * an exact LRU set of the most recent fragments decides. The Bloom filter is rebuilt from the LRU set
+ * once it has absorbed twice the capacity, to keep its false positive rate low.
+ */
+class SeenFragmentCache {
+
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final int capacity;
+    private final long[] bloom;
+    private final int bloomBits;
+    private int bloomInsertions;
+    private final LinkedHashMap<String, Boolean> recent;
+
+    private long duplicates;
+
+    SeenFragmentCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.bloomBits = Math.max(64, this.capacity * 2 * BITS_PER_ENTRY);
+        this.bloom = new long[(bloomBits + 63) / 64];
+        this.recent = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > SeenFragmentCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Record fragmentHeadHash as seen.
+     * @return true when fragmentHeadHash was already seen (and the fragment can be skipped)
+     */
+    synchronized boolean markSeen(String fragmentHeadHash) {
+        if (capacity == 0) {
+            return false;
+        }
+        if (mightContain(fragmentHeadHash) && recent.get(fragmentHeadHash) != null) {
+            duplicates++;
+            return true;
+        }
+        if (bloomInsertions >= capacity * 2) {
+            rebuildBloom();
+        }
+        addToBloom(fragmentHeadHash);
+        recent.put(fragmentHeadHash, Boolean.TRUE);
+        return false;
+    }
+
+    /**
+     * Check fragmentHeadHash without recording it, so that a fragment is only recorded once it has been indexed.
+     * @return true when fragmentHeadHash was already seen (and the fragment can be skipped)
+     */
+    synchronized boolean isSeen(String fragmentHeadHash) {
+        if (capacity == 0 || !mightContain(fragmentHeadHash) || recent.get(fragmentHeadHash) == null) {
+            return false;
+        }
+        duplicates++;
+        return true;
+    }
+
+    /**
+     * @return the number of fragments skipped because they were already seen
+     */
+    synchronized long getDuplicateCount() {
+        return duplicates;
+    }
+
+    private void rebuildBloom() {
+        Arrays.fill(bloom, 0);
+        bloomInsertions = 0;
+        for (String hash : recent.keySet()) {
+            addToBloom(hash);
+        }
+    }
+
+    private void addToBloom(String hash) {
+        int h1 = hash.hashCode();
+        int h2 = secondHash(hash);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+        bloomInsertions++;
+    }
+
+    private boolean mightContain(String hash) {
+        int h1 = hash.hashCode();
+        int h2 = secondHash(hash);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //FNV-1a, independent enough from String.hashCode for double hashing
+    private static int secondHash(String hash) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < hash.length(); i++) {
+            h ^= hash.charAt(i);
+            h *= 0x01000193;
+        }
+        return h | 1;
+    }
+}
@@ -1,35 +1,66 @@
 package org.iota.ict.ixi.serialization;
 
-import org.iota.ict.eee.EffectListenerQueue;
 import org.iota.ict.eee.Environment;
 import org.iota.ict.ixi.Ixi;
 import org.iota.ict.ixi.IxiModule;
 import org.iota.ict.ixi.serialization.model.BundleFragment;
 import org.iota.ict.ixi.serialization.model.ClassFragment;
 import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.iota.ict.ixi.serialization.model.MessageCache;
+import org.iota.ict.ixi.serialization.util.FragmentFlags;
+import org.iota.ict.ixi.serialization.util.FragmentScanner;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.iota.ict.ixi.serialization.util.TryteView;
 import org.iota.ict.ixi.serialization.util.Utils;
 import org.iota.ict.model.bundle.Bundle;
 import org.iota.ict.model.transaction.Transaction;
 import org.iota.ict.network.gossip.GossipEvent;
-import org.iota.ict.utils.Constants;
 import org.iota.ict.utils.Trytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @SuppressWarnings("WeakerAccess")
 public class SerializationModule extends IxiModule {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SerializationModule.class);
 
+    private final Metrics metrics = new Metrics();
+    private final LongAdder receivedBundles = metrics.counter("ingest.bundles");
+    private final LongAdder preFilteredBundles = metrics.counter("ingest.preFiltered.bundles");
+    private final LongAdder preFilteredTransactions = metrics.counter("ingest.preFiltered.transactions");
+    private final LongAdder invalidBundles = metrics.counter("ingest.invalidBundles");
+    private final LongAdder classFragmentsParsed = metrics.counter("ingest.classFragments");
+    private final LongAdder dataFragmentsParsed = metrics.counter("ingest.dataFragments");
+    private final LongAdder invalidFragments = metrics.counter("ingest.invalidFragments");
+    private final LongAdder listenerMatches = metrics.counter("listener.matches");
+    private final Metrics.Histogram decodeLatency = metrics.histogram("ingest.decodeMicros");
+    private final Metrics.Histogram applyLatency = metrics.histogram("ingest.applyMicros");
+    private final LongAdder checkpoints = metrics.counter("checkpoint.written");
+    private final Metrics.Histogram checkpointLatency = metrics.histogram("checkpoint.writeMillis");
+
+    private final Configuration configuration = new Configuration();
     //visible for testing
     final Persistence persistence = new Persistence();
-    private final Map<DataFragment.Filter, String> listeners = new HashMap<>();
+    private final Map<DataFragment.Filter, String> listeners = new ConcurrentHashMap<>();
+    private final Set<String> listenedClassHashes = ConcurrentHashMap.newKeySet();
+    private EEEFunctions eeeFunctions;
+    private GossipEventQueue gossipEventQueue;
+    private IngestionPipeline<DecodedBundle> ingestionPipeline;
+    private OrphanDataFragmentBuffer orphanDataFragments;
+    private SeenFragmentCache seenFragments;
+    private WarmStart warmStart;
 
     public SerializationModule(Ixi ixi) {
         super(ixi);
@@ -37,16 +68,68 @@ public class SerializationModule extends IxiModule {
 
     @Override
     public void run() {
-        EEEFunctions.init(this, ixi);
+        eeeFunctions = EEEFunctions.init(this, ixi);
+
+        if (!configuration.getClassRegistryFile().isEmpty()) {
+            try {
+                persistence.open(new ClassRegistry(new File(configuration.getClassRegistryFile())));
+            } catch (IOException e) {
+                LOGGER.warn("Cannot open class registry " + configuration.getClassRegistryFile() + ", classes will not survive restarts", e);
+            }
+        }
+        if (configuration.getStorage() == StorageType.LOG) {
+            try {
+                persistence.useLogStorage(new File(configuration.getStorageDirectory()));
+            } catch (IOException e) {
+                LOGGER.warn("Cannot open posting logs in " + configuration.getStorageDirectory() + ", postings are kept in memory", e);
+            }
+        }
+        if (!configuration.getPayloadClasses().isEmpty()) {
+            try {
+                persistence.usePayloadLog(new PayloadLog(new File(configuration.getPayloadDirectory()), PayloadLog.SEGMENT_BYTES,
+                        configuration.getPayloadCapacityMegabytes() * (1L << 20)), configuration.getPayloadClasses());
+            } catch (IOException e) {
+                LOGGER.warn("Cannot open payload store " + configuration.getPayloadDirectory() + ", payloads will not outlive their transactions", e);
+            }
+        }
+        persistence.limit(configuration.getClassCapacity(), configuration.getReferencingCapacity(), configuration.getEvictionPolicy());
+        MessageCache.setCapacity(configuration.getMessageCacheMegabytes() * (1L << 20));
+
+        orphanDataFragments = new OrphanDataFragmentBuffer(configuration.getOrphanCapacity(),
+                TimeUnit.SECONDS.toMillis(configuration.getOrphanTimeToLiveSeconds()));
+        seenFragments = new SeenFragmentCache(configuration.getSeenFragmentCapacity());
+        ingestionPipeline = new IngestionPipeline<>(new GossipEventHandler(), configuration.getDecodeWorkers());
+        ingestionPipeline.start();
 
         //register an effect listener observing Bundles
-        EffectListenerQueue<GossipEvent> bundleListener = new EffectListenerQueue(Constants.Environments.GOSSIP);
-        ixi.addListener(bundleListener);
-        GossipEventHandler gossipEventHandler = new GossipEventHandler();
+        gossipEventQueue = new GossipEventQueue(configuration.getGossipQueueCapacity(), configuration.getSheddingPolicy(),
+                configuration.getSampleRate(), gossipEvent -> isListened(gossipEvent.getTransaction()));
+        ixi.addListener(gossipEventQueue);
+        registerGauges();
+
+        File checkpointFile = checkpointFile();
+        if (configuration.getWarmStartParallelism() > 0 || checkpointFile != null) {
+            warmStart = new WarmStart(ixi, persistence, orphanDataFragments, seenFragments, metrics,
+                    configuration.getWarmStartParallelism(), checkpointFile);
+            warmStart.start();
+        }
+        if (checkpointFile != null) {
+            long interval = configuration.getCheckpointIntervalSeconds();
+            persistence.execService.scheduleWithFixedDelay(() -> writeCheckpoint(checkpointFile), interval, interval, TimeUnit.SECONDS);
+        }
+        int batchSize = configuration.getIngestionBatchSize();
+        List<GossipEvent> gossipEvents = new ArrayList<>(batchSize);
+        List<Transaction> bundleHeads = new ArrayList<>(batchSize);
         try{
             while(isRunning()){
-                GossipEvent gossipEvent = bundleListener.takeEffect();
-                gossipEventHandler.handleEvent(gossipEvent);
+                gossipEventQueue.drainTo(gossipEvents, batchSize);
+                for (GossipEvent gossipEvent : gossipEvents) {
+                    bundleHeads.add(gossipEvent.getTransaction());
+                }
+                receivedBundles.add(bundleHeads.size());
+                ingestionPipeline.submit(bundleHeads);
+                gossipEvents.clear();
+                bundleHeads.clear();
             }
         }catch (InterruptedException e){
             LOGGER.info("Serialization.ixi interrupted...");
@@ -62,11 +145,169 @@ public class SerializationModule extends IxiModule {
     @Override
     public void onTerminate() {
         super.onTerminate();
+        if (warmStart != null) {
+            warmStart.interrupt();
+        }
+        if (ingestionPipeline != null) {
+            ingestionPipeline.terminate();
+        }
+        //a scheduled checkpoint still running would write the same temporary file
+        persistence.stopCleaner();
+        File checkpointFile = checkpointFile();
+        if (checkpointFile != null) {
+            writeCheckpoint(checkpointFile);
+        }
         persistence.terminate();
+        //the cache is shared by all DataFragments, it must not outlive the module
+        MessageCache.clear();
         runningThread.interrupt();
         LOGGER.info("Serialization.ixi terminated.");
     }
 
+    /**
+     * @return the checkpoint file, null when checkpoints are disabled or the postings are already durable
+     */
+    private File checkpointFile() {
+        if (configuration.getCheckpointFile().isEmpty() || persistence.isDurable()) {
+            return null;
+        }
+        return new File(configuration.getCheckpointFile());
+    }
+
+    private synchronized void writeCheckpoint(File file) {
+        //a checkpoint written before the indexes are restored would replace the previous one with a partial copy
+        if (!isWarmStartComplete()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            persistence.checkpoint(file);
+            checkpoints.increment();
+            checkpointLatency.record(System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write checkpoint " + file, e);
+        }
+    }
+
+    private void registerGauges() {
+        metrics.gauge("ingest.duplicateFragments", seenFragments::getDuplicateCount);
+        metrics.gauge("shed.gossip", gossipEventQueue::getShedCount);
+        for (String stage : getIngestionQueueDepths().keySet()) {
+            metrics.gauge("queue." + stage, () -> getIngestionQueueDepths().get(stage));
+        }
+        for (String counter : orphanDataFragments.getStatistics().keySet()) {
+            metrics.gauge("orphan." + counter, () -> orphanDataFragments.getStatistics().get(counter));
+        }
+    }
+
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return a snapshot of the ingestion and query metrics, sorted by name:
+     * counters, gauges and latency histograms (reported as name.count, name.mean, name.p50, name.p99 and name.max)
+     */
+    public Map<String, Long> getStats() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * @return the module configuration. Changes must be applied before the module is started.
+     */
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * @return the number of gossiped bundles waiting in each stage of the ingestion pipeline, keyed by stage name
+     */
+    public Map<String, Integer> getIngestionQueueDepths() {
+        Map<String, Integer> ret = new LinkedHashMap<>();
+        ret.put("receive", gossipEventQueue == null ? 0 : gossipEventQueue.size());
+        if (ingestionPipeline != null) {
+            ret.putAll(ingestionPipeline.getQueueDepths());
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of gossip events and EEE requests dropped because their queue was full,
+     * keyed by "gossip" or by EEE function environment
+     * @see Configuration#getSheddingPolicy()
+     */
+    public Map<String, Long> getShedEventCounts() {
+        Map<String, Long> ret = new LinkedHashMap<>();
+        ret.put("gossip", gossipEventQueue == null ? 0 : gossipEventQueue.getShedCount());
+        if (eeeFunctions != null) {
+            ret.putAll(eeeFunctions.getShedRequestCounts());
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of gossiped fragments skipped because they were already ingested
+     */
+    public long getDuplicateFragmentCount() {
+        return seenFragments == null ? 0 : seenFragments.getDuplicateCount();
+    }
+
+    /**
+     * Walk the bundle looking for a ClassFragment, or a DataFragment of a class registered with
+     * {@link #registerDataListener(String, String)}. Filters registered with
+     * {@link #registerDataListener(DataFragment.Filter, String)} cannot be evaluated before decoding and are ignored.
+     */
+    private boolean isListened(Transaction bundleHead) {
+        Transaction t = bundleHead;
+        while (t != null) {
+            int flags = FragmentFlags.of(t);
+            if (FragmentFlags.isClassHead(flags)) {
+                return true;
+            }
+            if (FragmentFlags.isDataHead(flags) && listenedClassHashes.contains(t.address())) {
+                return true;
+            }
+            if (t.isBundleTail) {
+                break;
+            }
+            t = t.getTrunk();
+        }
+        return false;
+    }
+
+    /**
+     * @return true once the indexes have been rebuilt from the fragments stored in the Ict when the module started
+     * (or when the rebuild is disabled)
+     */
+    public boolean isWarmStartComplete() {
+        return warmStart == null || warmStart.isComplete();
+    }
+
+    /**
+     * @return the number of gossiped bundles rejected without building a Bundle because they contain no fragment
+     */
+    public long getPreFilteredBundleCount() {
+        return preFilteredBundles.sum();
+    }
+
+    /**
+     * @return the number of transactions of bundles rejected by the fragment pre-filter
+     */
+    public long getPreFilteredTransactionCount() {
+        return preFilteredTransactions.sum();
+    }
+
+    /**
+     * @return counters of the DataFragments parked while waiting for their ClassFragment:
+     * current size, parked, replayed, expired and evicted.
+     */
+    public Map<String, Long> getOrphanDataFragmentStatistics() {
+        if (orphanDataFragments == null) {
+            return Collections.emptyMap();
+        }
+        return orphanDataFragments.getStatistics();
+    }
+
     /**
      * Build a ClassFragment based on builder.
      * @param builder a ClassFragment.Builder
@@ -130,6 +371,17 @@ public class SerializationModule extends IxiModule {
         return persistence.search(classHash);
     }
 
+    /**
+     * @param classHash the classHash to load
+     * @return The ClassFragment for the given classHash or null when the fragment cannot be found
+     */
+    public ClassFragment loadClassFragmentForClassTryteHash(TryteHash classHash) {
+        if (classHash == null || classHash.equals(TryteHash.NULL_HASH)) {
+            throw new IllegalArgumentException("searched classHash cannot be null");
+        }
+        return persistence.search(classHash);
+    }
+
     /**
      * @return the DataFragment with head transaction identified by transactionHash,
      * or null if the transaction is not the head of a DataFragment or cannot be found.
@@ -144,15 +396,26 @@ public class SerializationModule extends IxiModule {
         }
         Transaction tx = ixi.findTransactionByHash(transactionHash);
         if (tx == null) {
-            return null;
+            return persistence.restorePayload(transactionHash);
         }
         ClassFragment classFragment = persistence.search(tx.address());
         if(classFragment!=null) {
-            return new DataFragment(tx, classFragment);
+            return new DataFragment(tx, classFragment, persistence.payloads);
         }
         return null;
     }
 
+    /**
+     * @see #loadDataFragment(String)
+     */
+    public DataFragment loadDataFragmentByTryteHash(TryteHash transactionHash) {
+        if (transactionHash == null) {
+            throw new IllegalArgumentException("'null' is not a valid transaction hash");
+        }
+        //the Ict looks transactions up by tryte string
+        return loadDataFragment(transactionHash.toString());
+    }
+
 
     /**
      * @return the DataFragment referenced from dataFragment at index index,
@@ -165,8 +428,10 @@ public class SerializationModule extends IxiModule {
             if (headTransaction != null) {
                 ClassFragment classFragment = persistence.search(headTransaction.address());
                 if(classFragment!=null) {
-                    return new DataFragment(headTransaction, classFragment);
+                    return new DataFragment(headTransaction, classFragment, persistence.payloads);
                 }
+            } else if (!Trytes.NULL_HASH.equals(headTransactionHash)) {
+                return persistence.restorePayload(headTransactionHash);
             }
         }
         return null;
@@ -177,19 +442,9 @@ public class SerializationModule extends IxiModule {
      * @return all DataFragment for a given classHash
      */
     public Set<DataFragment> findDataFragmentForClassHash(String classHash) {
-        Set<Transaction> transactions = ixi.findTransactionsByAddress(classHash);
-        Set<DataFragment> ret = new HashSet<>();
-        for (Transaction t : transactions) {
-            try {
-                ClassFragment classFragment = persistence.search(t.address());
-                if(classFragment!=null) {
-                    DataFragment fragment = new DataFragment(t, classFragment);
-                    ret.add(fragment);
-                }
-            } catch (IllegalArgumentException e) {
-                //not a valid bundle fragment.
-            }
-        }
+        Set<DataFragment> ret = persistence.findByClass(classHash);
+        //the tangle may have pruned fragments the cleaner did not sweep yet
+        ret.removeIf(dataFragment -> dataFragment.getHeadTransaction() == null);
         return ret;
     }
 
@@ -204,18 +459,17 @@ public class SerializationModule extends IxiModule {
         if (referencedTransactionHash == null || referencedTransactionHash.equals(Trytes.NULL_HASH)) {
             throw new IllegalArgumentException("referencedTransactionHash cannot be null");
         }
-        Set<DataFragment> ret = persistence.referencing.get(referencedTransactionHash);
-        if(ret==null || ret.size()==0) return Collections.EMPTY_SET;
-        if(filter==null){
-            return ret;
-        }
-        HashSet<DataFragment> filtered = new HashSet<>();
-        for(DataFragment f:ret){
-            if(filter.match(f)){
-                filtered.add(f);
-            }
+        return filter(persistence.findReferencing(referencedTransactionHash), filter);
+    }
+
+    /**
+     * @see #findDataFragmentReferencing(String, DataFragment.Filter)
+     */
+    public Set<DataFragment> findDataFragmentReferencing(TryteHash referencedTransactionHash, DataFragment.Filter filter) {
+        if (referencedTransactionHash == null || referencedTransactionHash.equals(TryteHash.NULL_HASH)) {
+            throw new IllegalArgumentException("referencedTransactionHash cannot be null");
         }
-        return filtered;
+        return filter(persistence.findReferencing(referencedTransactionHash), filter);
     }
 
     /**
@@ -230,15 +484,33 @@ public class SerializationModule extends IxiModule {
         if (referencedTransactionHash == null || referencedTransactionHash.equals(Trytes.NULL_HASH)) {
             throw new IllegalArgumentException("referencedTransactionHash cannot be null");
         }
-        Set<DataFragment> ret = persistence.referencing.get(referencedTransactionHash);
-        if(ret==null || ret.size()==0) return Collections.EMPTY_SET;
+        if (referenceIndex < 0) {
+            return Collections.EMPTY_SET;
+        }
+        return filter(persistence.findReferencing(referencedTransactionHash, referenceIndex), filter);
+    }
+
+    /**
+     * @see #findDataFragmentReferencingAtIndex(int, String, DataFragment.Filter)
+     */
+    public Set<DataFragment> findDataFragmentReferencingAtIndex(int referenceIndex, TryteHash referencedTransactionHash, DataFragment.Filter filter) {
+        if (referencedTransactionHash == null || referencedTransactionHash.equals(TryteHash.NULL_HASH)) {
+            throw new IllegalArgumentException("referencedTransactionHash cannot be null");
+        }
+        if (referenceIndex < 0) {
+            return Collections.EMPTY_SET;
+        }
+        return filter(persistence.findReferencing(referencedTransactionHash, referenceIndex), filter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<DataFragment> filter(Set<DataFragment> fragments, DataFragment.Filter filter) {
+        if(fragments.size()==0) return Collections.EMPTY_SET;
         if(filter==null){
-            filter = dataFragment -> dataFragment.getReference(referenceIndex).equals(referencedTransactionHash);
-        }else{
-            filter = DataFragment.Filter.and(filter, dataFragment -> dataFragment.getReference(referenceIndex).equals(referencedTransactionHash));
+            return fragments;
         }
         HashSet<DataFragment> filtered = new HashSet<>();
-        for(DataFragment f:ret){
+        for(DataFragment f:fragments){
             if(filter.match(f)){
                 filtered.add(f);
             }
@@ -258,6 +530,13 @@ public class SerializationModule extends IxiModule {
         return findClassFragmentReferencingAtIndex(-1,referencedClassHash, filter);
     }
 
+    /**
+     * @see #findClassFragmentReferencing(String, ClassFragment.Filter)
+     */
+    public Set<ClassFragment> findClassFragmentReferencing(TryteHash referencedClassHash, ClassFragment.Filter filter) {
+        return findClassFragmentReferencingAtIndex(-1,referencedClassHash, filter);
+    }
+
     /**
      * @param referencedClassHash the classHash to be referenced (by reference at index 'referenceIndex')
      * @param referenceIndex of the reference to inspect
@@ -270,16 +549,24 @@ public class SerializationModule extends IxiModule {
         if (referencedClassHash == null || referencedClassHash.equals(Trytes.NULL_HASH)) {
             throw new IllegalArgumentException("referencedClassHash cannot be null");
         }
+        if (!TryteHash.isValid(referencedClassHash)) {
+            return new HashSet<>();
+        }
+        return findClassFragmentReferencingAtIndex(referenceIndex, TryteHash.of(referencedClassHash), filter);
+    }
+
+    /**
+     * @see #findClassFragmentReferencingAtIndex(int, String, ClassFragment.Filter)
+     */
+    public Set<ClassFragment> findClassFragmentReferencingAtIndex(int referenceIndex, TryteHash referencedClassHash, ClassFragment.Filter filter) {
+        if (referencedClassHash == null || referencedClassHash.equals(TryteHash.NULL_HASH)) {
+            throw new IllegalArgumentException("referencedClassHash cannot be null");
+        }
         HashSet<ClassFragment> filtered = new HashSet<>();
-        for(ClassFragment classFragment: persistence.classFragments.values()){
-            if(classFragment.isReferencing(referenceIndex,referencedClassHash)){
-                if(filter!=null){
-                    if(filter.match(classFragment)){
-                        filtered.add(classFragment);
-                    }
-                }else{
-                    filtered.add(classFragment);
-                }
+        for(TryteHash classHash: persistence.referencingClasses(referencedClassHash, referenceIndex)){
+            ClassFragment classFragment = persistence.search(classHash);
+            if(classFragment!=null && (filter==null || filter.match(classFragment))){
+                filtered.add(classFragment);
             }
         }
         return filtered;
@@ -298,6 +585,17 @@ public class SerializationModule extends IxiModule {
         return dataFragment.getAttributeAsTryte(index);
     }
 
+    /**
+     * Same as {@link #getAttributeTrytes(DataFragment, int)} without copying the trytes, for large attributes and comparisons.
+     * @throws ArrayIndexOutOfBoundsException when attributeIndex is not in range
+     */
+    public TryteView getAttributeView(DataFragment dataFragment, int index) {
+        if (dataFragment == null) {
+            throw new IllegalArgumentException("dataFragment cannot be null");
+        }
+        return dataFragment.getAttributeView(index);
+    }
+
     /**
      * @param dataFragmentTransactionHash : the hash of the fragment to inspect
      * @param index : index of an attribute
@@ -318,6 +616,7 @@ public class SerializationModule extends IxiModule {
      * @param environmentId : environment where effect will be sent
      */
     public void registerDataListener(String classHash, String environmentId) {
+        listenedClassHashes.add(classHash);
         DataFragment.Filter matcher = dataFragment ->
                 dataFragment.getClassHash().equals(classHash);
         registerDataListener(matcher, environmentId);
@@ -337,6 +636,7 @@ public class SerializationModule extends IxiModule {
     void notifyListeners(DataFragment dataFragment) {
         for (DataFragment.Filter dataFragmentFilter : listeners.keySet()) {
             if (dataFragmentFilter.match(dataFragment)) {
+                listenerMatches.increment();
                 Environment env = new Environment(listeners.get(dataFragmentFilter));
                 ixi.submitEffect(env, dataFragment);
             }
@@ -408,125 +708,573 @@ public class SerializationModule extends IxiModule {
 
     /**
      * Receive Bundles and inspect them to find class fragments or data fragments.
+     * Decoding runs on the decode workers of the ingestion pipeline, persistence and notification on the persist stage.
      */
-    private class GossipEventHandler {
+    private class GossipEventHandler implements IngestionPipeline.Stages<DecodedBundle> {
+
+        @Override
+        public DecodedBundle decode(Transaction bundleHead) {
+            long start = System.nanoTime();
+            try {
+                return decodeBundle(bundleHead);
+            } finally {
+                decodeLatency.record((System.nanoTime() - start) / 1000);
+            }
+        }
 
-        public void handleEvent(GossipEvent effect) {
-            Transaction tx = effect.getTransaction();
-            if (tx.isBundleHead) {
-                Bundle bundle = new Bundle(tx);
-                if (bundle.isComplete() && bundle.isStructureValid()) {
-                    processBundle(bundle, null);
-                } else {
-                    throw new RuntimeException("Received an incomplete or invalid bundle. This shouldn't append");
+        private DecodedBundle decodeBundle(Transaction bundleHead) {
+            //most bundles contain no fragment: reject them before building and validating the Bundle
+            int fragmentFreeTransactions = FragmentScanner.screen(bundleHead);
+            if (fragmentFreeTransactions > 0) {
+                preFilteredBundles.increment();
+                preFilteredTransactions.add(fragmentFreeTransactions);
+                return null;
+            }
+            Bundle bundle = new Bundle(bundleHead);
+            if (bundle.isComplete() && bundle.isStructureValid()) {
+                DecodedBundle decoded = new DecodedBundle();
+                FragmentScanner.scan(bundle.getHead(), decoded);
+                return decoded;
+            } else {
+                invalidBundles.increment();
+                throw new RuntimeException("Received an incomplete or invalid bundle. This shouldn't append");
+            }
+        }
+
+        @Override
+        public void apply(List<DecodedBundle> batch) {
+            long start = System.nanoTime();
+            try {
+                applyBatch(batch);
+            } finally {
+                applyLatency.record((System.nanoTime() - start) / 1000);
+            }
+        }
+
+        private void applyBatch(List<DecodedBundle> batch) {
+            List<Transaction> dataFragmentHeads = new ArrayList<>();
+            for (DecodedBundle decoded : batch) {
+                for (ClassFragment classFragment : decoded.classFragments) {
+                    persistence.persist(classFragment);
+                    seenFragments.markSeen(classFragment.getHeadTransactionHash());
+                    //DataFragments received before their class
+                    dataFragmentHeads.addAll(orphanDataFragments.replay(classFragment.getClassHash()));
+                }
+            }
+            for (DecodedBundle decoded : batch) {
+                dataFragmentHeads.addAll(decoded.dataFragmentHeads);
+            }
+            List<DataFragment> dataFragments = new ArrayList<>();
+            //the same fragment may be decoded twice before it is marked seen
+            Set<String> batchHeads = new HashSet<>();
+            for (Transaction dataFragmentHead : dataFragmentHeads) {
+                if (!batchHeads.add(dataFragmentHead.hash) || seenFragments.isSeen(dataFragmentHead.hash)) {
+                    continue;
+                }
+                DataFragment dataFragment = processDataFragment(dataFragmentHead);
+                if (dataFragment != null) {
+                    dataFragments.add(dataFragment);
                 }
             }
+            persistence.persist(dataFragments);
+            //marked only once indexed: orphans and fragments of a failed batch are ingested again when gossiped again
+            for (DataFragment dataFragment : dataFragments) {
+                seenFragments.markSeen(dataFragment.getHeadTransactionHash());
+            }
+            for (DataFragment dataFragment : dataFragments) {
+                notifyListeners(dataFragment);
+            }
+        }
+
+        private DataFragment processDataFragment(Transaction fragmentHead) {
+            ClassFragment classFragment = persistence.search(fragmentHead.address());
+            if(classFragment!=null) {
+                try {
+                    DataFragment dataFragment = new DataFragment(fragmentHead, classFragment, persistence.payloads);
+                    dataFragmentsParsed.increment();
+                    return dataFragment;
+                } catch (IllegalArgumentException e) {
+                    invalidFragments.increment();
+                    LOGGER.debug("Ignoring invalid data fragment " + fragmentHead.hash + ": " + e.getMessage());
+                }
+            } else {
+                orphanDataFragments.park(fragmentHead.address(), fragmentHead);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Fragments found in a bundle by a decode worker. Fragments already ingested are skipped.
+     */
+    private class DecodedBundle implements FragmentScanner.Listener {
+        private final List<ClassFragment> classFragments = new ArrayList<>();
+        private final List<Transaction> dataFragmentHeads = new ArrayList<>();
+
+        @Override
+        public void onClassFragment(Transaction head, Transaction tail) {
+            if (seenFragments.isSeen(head.hash)) {
+                return;
+            }
+            try {
+                ClassFragment classFragment = new ClassFragment(head);
+                //compute the classHash while we are on a decode worker
+                classFragment.getClassHash();
+                classFragments.add(classFragment);
+                classFragmentsParsed.increment();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                invalidFragments.increment();
+                LOGGER.debug("Ignoring invalid class fragment " + head.hash + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onDataFragment(Transaction head, Transaction tail) {
+            if (seenFragments.isSeen(head.hash)) {
+                return;
+            }
+            //the ClassFragment may be in the same bundle: the DataFragment is built on the persist stage.
+            dataFragmentHeads.add(head);
+        }
+    }
+
+
+    class Persistence {
+        //reads never lock, iteration is safe while the index is updated
+        private final Map<TryteHash, ClassFragment> classFragments = new ConcurrentHashMap<>();
+        //off-heap until useLogStorage() is called
+        private volatile PostingStore referencing = new ReferencingIndex();
+        //DataFragments by class hash, so that listing the instances of a class does not scan the tangle
+        private volatile PostingStore byClass = new ReferencingIndex();
+        //covers the classes in memory, the class registry indexes the registered ones
+        final ClassReferenceIndex classReferences = new ClassReferenceIndex();
+        //null until usePayloadLog() is called
+        volatile PayloadLog payloads;
+        private final Set<TryteHash> payloadClasses = ConcurrentHashMap.newKeySet();
+
+        private final LongAdder cleanerRuns = metrics.counter("cleaner.runs");
+        private final LongAdder cleanerDropped = metrics.counter("cleaner.droppedTransactions");
+        private final LongAdder cleanerEvictedClasses = metrics.counter("cleaner.evictedClassFragments");
+        private final LongAdder evictedClasses = metrics.counter("eviction.classFragments");
+        private final LongAdder evictedReferenced = metrics.counter("eviction.referencedHashes");
+        private final LongAdder storedPayloads = metrics.counter("payloads.stored");
+
+        //null while the index is unbounded
+        private volatile Eviction<TryteHash> classEviction;
+        private volatile Eviction<TryteHash> referencingEviction;
+        private int classCapacity;
+        private long referencingCapacity;
+        private Predicate<TryteHash> pinnedClasses = classHash -> false;
+
+        //seconds between two cleaner runs
+        int delay = configuration.getCleanerIntervalSeconds();
+
+        public Persistence() {
+            metrics.gauge("referencing.keys", () -> referencing.size());
+            metrics.gauge("referencing.postings", () -> referencing.postingCount());
+            metrics.gauge("referencing.storageBytes", () -> referencing.storageBytes());
+            metrics.gauge("cleaner.collectedPostings", () -> referencing.collectedPostingCount());
+            metrics.gauge("classFragments.size", classFragments::size);
+            metrics.gauge("byClass.keys", () -> byClass.size());
+            metrics.gauge("byClass.postings", () -> byClass.postingCount());
+            metrics.gauge("classReferences.keys", classReferences::size);
+            execService.schedule(task, delay, TimeUnit.SECONDS);
+        }
+
+        private volatile ClassStore classRegistry;
+
+        void open(ClassStore classRegistry){
+            this.classRegistry = classRegistry;
+            metrics.gauge("classRegistry.size", classRegistry::size);
+        }
+
+        /**
+         * Replace the off-heap posting stores by log files in directory, kept across restarts.
+         * Must be called before any DataFragment is persisted and before {@link #limit(int, int, EvictionPolicy)}.
+         */
+        void useLogStorage(File directory) throws IOException {
+            PostingStore referencingLog = new LogPostingStore(new File(directory, "referencing.log"), this::resolve);
+            PostingStore byClassLog;
+            try {
+                byClassLog = new LogPostingStore(new File(directory, "byClass.log"), this::resolve);
+            } catch (IOException e) {
+                referencingLog.close();
+                throw e;
+            }
+            referencing.close();
+            byClass.close();
+            referencing = referencingLog;
+            byClass = byClassLog;
         }
 
-        private void processBundle(Bundle bundle, Transaction startingTransaction) {
-            Transaction t = startingTransaction == null ? bundle.getHead() : startingTransaction;
+        /**
+         * @return true when the postings survive restarts
+         */
+        boolean isDurable(){
+            return referencing instanceof LogPostingStore;
+        }
 
-            //search for fragment head
-            while (!t.isBundleTail && !isFragmentHead(t)) {
-                t = t.getTrunk();
+        /**
+         * @return the DataFragment with head transaction headHash, or null when it is gone from the Ict
+         * or its ClassFragment is unknown
+         */
+        private DataFragment resolve(String headHash){
+            Transaction head = ixi.findTransactionByHash(headHash);
+            if(head==null){
+                return restorePayload(headHash);
+            }
+            ClassFragment classFragment = search(head.address());
+            if(classFragment==null){
+                return null;
             }
+            try {
+                return new DataFragment(head, classFragment, payloads);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Keep the payload of the DataFragments of classHashes in payloadLog.
+         */
+        void usePayloadLog(PayloadLog payloadLog, Set<String> classHashes){
+            for(String classHash:classHashes){
+                payloadClasses.add(TryteHash.of(classHash));
+            }
+            payloads = payloadLog;
+            metrics.gauge("payloads.size", payloadLog::size);
+            metrics.gauge("payloads.storageBytes", payloadLog::storageBytes);
+        }
 
-            Transaction fragmentTail = null;
-            if (isFragmentHead(t)) {
-                if (ClassFragment.isHead(t)) {
-                    if (foundClassFragmentTail(bundle, t)) {
-                        fragmentTail = processClassFragment(t);
+        /**
+         * @return the DataFragment with head transaction headHash rebuilt from the payload store,
+         * null when its payload is not stored or its ClassFragment is unknown
+         */
+        DataFragment restorePayload(String headHash){
+            PayloadLog payloadLog = payloads;
+            String classHash = payloadLog == null ? null : payloadLog.loadClassHash(headHash);
+            ClassFragment classFragment = classHash == null ? null : search(classHash);
+            if(classFragment==null){
+                return null;
+            }
+            try {
+                return new DataFragment(headHash, classFragment, payloadLog);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private void storePayloads(Collection<DataFragment> dataFragments){
+            PayloadLog payloadLog = payloads;
+            if(payloadLog==null){
+                return;
+            }
+            try {
+                for(DataFragment dataFragment:dataFragments){
+                    if(payloadClasses.contains(dataFragment.getClassFragment().getClassTryteHash())
+                            && payloadLog.append(dataFragment)){
+                        storedPayloads.increment();
                     }
-                } else {
-                    if (foundDataFragmentTail(bundle, t)) {
-                        fragmentTail = processDataFragment(t);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to store payloads", e);
+            }
+        }
+
+        /**
+         * Bound the indexes, a capacity of 0 leaves an index unbounded.
+         * Evicted ClassFragments are reloaded from the class registry when needed: without a registry they would be lost,
+         * classCapacity is ignored. Evicted referenced transactions are no longer indexed.
+         * byClass and classReferences are not bounded: byClass only holds the DataFragments still resolvable
+         * (the cleaner drops the others), classReferences grows with the number of known classes.
+         */
+        void limit(int classCapacity, int referencingCapacity, EvictionPolicy policy){
+            if(classCapacity>0 && classRegistry==null){
+                LOGGER.warn("classCapacity ignored: without a class registry, evicted ClassFragments would be lost.");
+                classCapacity = 0;
+            }
+            this.classCapacity = classCapacity;
+            this.referencingCapacity = referencingCapacity;
+            pinnedClasses = policy == EvictionPolicy.PIN_LISTENED
+                    ? classHash -> listenedClassHashes.contains(classHash.toString())
+                    : classHash -> false;
+            if(classCapacity>0){
+                Eviction<TryteHash> eviction = Eviction.create(policy);
+                synchronized (eviction){
+                    classEviction = eviction;
+                    classFragments.keySet().forEach(eviction::onInsert);
+                    evictClasses(eviction);
+                }
+            }
+            if(referencingCapacity>0){
+                Eviction<TryteHash> eviction = Eviction.create(policy);
+                synchronized (eviction){
+                    referencingEviction = eviction;
+                    for(String referencedHash:referencing.referencedHashes()){
+                        eviction.onInsert(TryteHash.of(referencedHash));
                     }
+                    evictReferenced(eviction);
                 }
             }
+        }
 
-            //process the remainder of the bundle
-            if (fragmentTail != null && !fragmentTail.isBundleTail && fragmentTail.getTrunk() != null) {
-                processBundle(bundle, fragmentTail.getTrunk());
+        private void trackClass(TryteHash classHash){
+            Eviction<TryteHash> eviction = classEviction;
+            if(eviction!=null){
+                synchronized (eviction){
+                    eviction.onInsert(classHash);
+                    evictClasses(eviction);
+                }
             }
         }
 
-        private boolean foundClassFragmentTail(Bundle bundle, Transaction fragmentHead) {
-            Transaction t = fragmentHead;
-            while (t != null && !ClassFragment.isTail(t)) {
-                t = t.getTrunk();
-                if (!bundle.getTransactions().contains(t)) {
-                    return false;
+        private void evictClasses(Eviction<TryteHash> eviction){
+            while(classFragments.size()>classCapacity){
+                TryteHash victim = eviction.victim(pinnedClasses);
+                if(victim==null){
+                    break;
+                }
+                ClassFragment evicted = classFragments.remove(victim);
+                if(evicted!=null){
+                    classReferences.remove(evicted);
+                    evictedClasses.increment();
                 }
             }
-            return ClassFragment.isTail(t);
         }
 
-        private boolean foundDataFragmentTail(Bundle bundle, Transaction fragmentHead) {
-            Transaction t = fragmentHead;
-            while (t != null && !DataFragment.isTail(t)) {
-                t = t.getTrunk();
-                if (!bundle.getTransactions().contains(t)) {
-                    return false;
+        private void trackReferenced(Collection<String> referencedHashes){
+            Eviction<TryteHash> eviction = referencingEviction;
+            if(eviction!=null){
+                synchronized (eviction){
+                    for(String referencedHash:referencedHashes){
+                        eviction.onInsert(TryteHash.of(referencedHash));
+                    }
+                    evictReferenced(eviction);
                 }
             }
-            return DataFragment.isTail(t);
         }
 
-        private boolean isFragmentHead(Transaction transaction) {
-            return ClassFragment.isHead(transaction) || DataFragment.isHead(transaction);
+        private void evictReferenced(Eviction<TryteHash> eviction){
+            while(referencing.postingCount()>referencingCapacity){
+                TryteHash victim = eviction.victim(referencedHash -> false);
+                if(victim==null){
+                    break;
+                }
+                if(referencing.remove(victim.toString())){
+                    evictedReferenced.increment();
+                }
+            }
         }
 
-        private Transaction processClassFragment(Transaction fragmentHead) {
-            assert ClassFragment.isHead(fragmentHead);
-            ClassFragment classFragment = new ClassFragment(fragmentHead);
-            persistence.persist(classFragment);
-            return classFragment.getTailTransaction();
+        private void touch(Eviction<TryteHash> eviction, TryteHash key){
+            if(eviction!=null){
+                synchronized (eviction){
+                    eviction.onAccess(key);
+                }
+            }
         }
 
-        private Transaction processDataFragment(Transaction fragmentHead) {
-            ClassFragment classFragment = persistence.search(fragmentHead.address());
-            if(classFragment!=null) {
-                DataFragment dataFragment = new DataFragment(fragmentHead, classFragment);
-                persistence.persist(dataFragment);
-                notifyListeners(dataFragment);
-                return dataFragment.getTailTransaction();
+        private void forget(Eviction<TryteHash> eviction, TryteHash key){
+            if(eviction!=null){
+                synchronized (eviction){
+                    eviction.onRemove(key);
+                }
             }
-            return null;
         }
-    }
 
+        Set<DataFragment> findReferencing(String referencedHash){
+            return findReferencing(referencedHash, PostingStore.ANY_INDEX);
+        }
 
-    class Persistence {
-        private final Map<String, ClassFragment> classFragments = new HashMap<>();
-        private final Map<String, Set<DataFragment>> referencing = new HashMap<>();
+        Set<DataFragment> findReferencing(TryteHash referencedHash){
+            return findReferencing(referencedHash, PostingStore.ANY_INDEX);
+        }
 
-        int delay = Constants.RUN_MODUS == Constants.RunModus.MAIN ? 60 : 3;
+        /**
+         * @param referenceIndex the reference holding referencedHash, {@link PostingStore#ANY_INDEX} for any reference
+         */
+        Set<DataFragment> findReferencing(String referencedHash, int referenceIndex){
+            if(referencingEviction!=null && TryteHash.isValid(referencedHash)){
+                touch(referencingEviction, TryteHash.of(referencedHash));
+            }
+            return referencing.get(referencedHash, referenceIndex);
+        }
 
-        public Persistence() {
-            execService.schedule(task, delay, TimeUnit.SECONDS);
+        Set<DataFragment> findReferencing(TryteHash referencedHash, int referenceIndex){
+            touch(referencingEviction, referencedHash);
+            return referencing.get(referencedHash, referenceIndex);
+        }
+
+        /**
+         * @return a snapshot of the indexed DataFragments of classHash
+         */
+        Set<DataFragment> findByClass(String classHash){
+            return byClass.get(classHash);
+        }
+
+        /**
+         * @return the hashes of the known classes referencing referencedClassHash, in memory or registered
+         */
+        Set<TryteHash> referencingClasses(TryteHash referencedClassHash, int referenceIndex){
+            Set<TryteHash> ret = classReferences.referencing(referencedClassHash, referenceIndex);
+            ClassStore registry = classRegistry;
+            if(registry!=null){
+                ret.addAll(registry.referencing(referencedClassHash, referenceIndex));
+            }
+            return ret;
         }
 
         public void persist(ClassFragment classFragment){
-            classFragments.put(classFragment.getClassHash(), classFragment);
+            classFragments.put(classFragment.getClassTryteHash(), classFragment);
+            classReferences.add(classFragment);
+            ClassStore registry = classRegistry;
+            if(registry!=null){
+                registry.append(classFragment);
+            }
+            trackClass(classFragment.getClassTryteHash());
+        }
+
+        /**
+         * Stop the cleaner and the scheduled checkpoints, waiting for a running task to complete.
+         */
+        void stopCleaner(){
+            execService.shutdownNow();
+            try {
+                if(!execService.awaitTermination(10, TimeUnit.SECONDS)){
+                    LOGGER.warn("Persistence cleaner still running after 10 seconds.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
 
         public void terminate(){
-            referencing.clear();
+            //the cleaner must not read the stores while they are closed
+            stopCleaner();
+            classEviction = null;
+            referencingEviction = null;
+            referencing.close();
+            byClass.close();
+            if(payloads!=null){
+                payloads.close();
+                payloads = null;
+            }
+            classReferences.clear();
             classFragments.clear();
-            execService.shutdownNow();
+            if(classRegistry!=null){
+                classRegistry.close();
+                classRegistry = null;
+            }
         }
 
         public void persist(DataFragment dataFragment){
+            byClass.add(dataFragment.getClassFragment().getClassHash(), dataFragment);
             for(int i=0;i<dataFragment.getClassFragment().getRefCount();i++){
                 String referenced = dataFragment.getReference(i);
                 if(!referenced.equals(Trytes.NULL_HASH)){
-                    Set<DataFragment> set = referencing.computeIfAbsent(referenced, k -> new HashSet<>());
-                    set.add(dataFragment);
+                    referencing.add(referenced, dataFragment, i);
+                    trackReferenced(Collections.singletonList(referenced));
+                }
+            }
+            storePayloads(Collections.singletonList(dataFragment));
+        }
+        /**
+         * Index a batch of DataFragments, grouping the writes per referenced transaction.
+         */
+        public void persist(Collection<DataFragment> dataFragments){
+            Map<String, List<DataFragment>> byReferenced = new HashMap<>();
+            Map<String, List<Integer>> referenceIndexes = new HashMap<>();
+            Map<String, List<DataFragment>> byClassHash = new HashMap<>();
+            for(DataFragment dataFragment:dataFragments){
+                byClassHash.computeIfAbsent(dataFragment.getClassFragment().getClassHash(), k -> new ArrayList<>()).add(dataFragment);
+                for(int i=0;i<dataFragment.getClassFragment().getRefCount();i++){
+                    String referenced = dataFragment.getReference(i);
+                    if(!referenced.equals(Trytes.NULL_HASH)){
+                        byReferenced.computeIfAbsent(referenced, k -> new ArrayList<>()).add(dataFragment);
+                        referenceIndexes.computeIfAbsent(referenced, k -> new ArrayList<>()).add(i);
+                    }
                 }
             }
+            for(Map.Entry<String, List<DataFragment>> entry:byReferenced.entrySet()){
+                int[] indexes = referenceIndexes.get(entry.getKey()).stream().mapToInt(Integer::intValue).toArray();
+                referencing.addAll(entry.getKey(), entry.getValue(), indexes);
+            }
+            trackReferenced(byReferenced.keySet());
+            for(Map.Entry<String, List<DataFragment>> entry:byClassHash.entrySet()){
+                byClass.addAll(entry.getKey(), entry.getValue());
+            }
+            storePayloads(dataFragments);
+        }
+
+        /**
+         * Write a checkpoint of the indexes to file. Writers only wait while the off-heap buffers are copied.
+         */
+        void checkpoint(File file) throws IOException {
+            Checkpoint.write(file, new ArrayList<>(classFragments.values()), referencing.snapshot(), byClass.snapshot());
+        }
+
+        /**
+         * Load the checkpoint written to file, if any.
+         * @param onRestored called for each restored DataFragment
+         * @return false when there is no checkpoint
+         */
+        boolean restore(File file, Consumer<DataFragment> onRestored) throws IOException {
+            return Checkpoint.read(file, new Checkpoint.Loader() {
+                @Override
+                public void onClassFragment(ClassFragment classFragment) {
+                    persist(classFragment);
+                }
+
+                @Override
+                public DataFragment resolve(String headHash) {
+                    DataFragment dataFragment = Persistence.this.resolve(headHash);
+                    if(dataFragment!=null){
+                        onRestored.accept(dataFragment);
+                    }
+                    return dataFragment;
+                }
+
+                @Override
+                public void onReferencing(String referencedHash, List<DataFragment> fragments, int[] referenceIndexes) {
+                    referencing.addAll(referencedHash, fragments, referenceIndexes);
+                    trackReferenced(Collections.singletonList(referencedHash));
+                }
+
+                @Override
+                public void onClassInstances(String classHash, List<DataFragment> fragments) {
+                    byClass.addAll(classHash, fragments);
+                }
+            });
         }
+
+        /**
+         * @return the ClassFragment for classHash, from memory or else from the class registry
+         */
         public ClassFragment search(String classHash){
-            return classFragments.get(classHash);
+            if(!TryteHash.isValid(classHash)){
+                return null;
+            }
+            return search(TryteHash.of(classHash));
+        }
+
+        public ClassFragment search(TryteHash classHash){
+            ClassFragment classFragment = classFragments.get(classHash);
+            if(classFragment!=null){
+                touch(classEviction, classHash);
+                return classFragment;
+            }
+            ClassStore registry = classRegistry;
+            if(registry!=null){
+                classFragment = registry.load(classHash);
+                if(classFragment!=null){
+                    ClassFragment concurrent = classFragments.putIfAbsent(classHash, classFragment);
+                    if(concurrent!=null){
+                        classFragment = concurrent;
+                    }
+                    trackClass(classHash);
+                }
+            }
+            return classFragment;
         }
 
         final ScheduledExecutorService execService =
@@ -536,33 +1284,74 @@ public class SerializationModule extends IxiModule {
                     return newThread;
                 });
 
+        //each run checks a bounded slice of the indexes and resumes where the previous run stopped
         final Callable<Void> task = new Callable<Void>() {
+            private int referencingCursor;
+            private int byClassCursor;
+            private Iterator<Map.Entry<TryteHash, ClassFragment>> classCursor;
+
             public Void call() {
+                long started = System.currentTimeMillis();
                 try {
-                    List<String> droppedTransactions = new ArrayList<>();
-                    for(String txHash:referencing.keySet()){
-                        if(ixi.findTransactionByHash(txHash)==null){
-                            droppedTransactions.add(txHash);
+                    int budget = configuration.getCleanerBudget();
+                    List<String> live = new ArrayList<>();
+                    List<String> removed = new ArrayList<>();
+                    referencingCursor = referencing.sweep(referencingCursor, budget, live, removed);
+                    int droppedTransactions = 0;
+                    for(String txHash:live){
+                        if(ixi.findTransactionByHash(txHash)==null && referencing.remove(txHash)){
+                            removed.add(txHash);
+                            droppedTransactions++;
                         }
                     }
-                    for(String txHash:droppedTransactions){
-                        referencing.remove(txHash);
+                    if(referencingEviction!=null){
+                        for(String txHash:removed){
+                            forget(referencingEviction, TryteHash.of(txHash));
+                        }
                     }
-                    if(droppedTransactions.size()>0){
-                        LOGGER.info("Dropped "+droppedTransactions.size()+" referenced transactions.");
-                        delay = Math.max(delay/2, 60);
-                    }else{
-                        delay = Math.min(delay*2, 600);
-                        LOGGER.debug("Dropped 0 referenced transactions. Next run in "+delay+" seconds");
+                    //class hashes are not transactions: only the collected DataFragments are dropped
+                    byClassCursor = byClass.sweep(byClassCursor, budget, new ArrayList<>(), new ArrayList<>());
+                    int evictedClasses = evictClassFragments(budget);
+                    cleanerRuns.increment();
+                    cleanerDropped.add(droppedTransactions);
+                    cleanerEvictedClasses.add(evictedClasses);
+                    if(droppedTransactions>0 || evictedClasses>0){
+                        LOGGER.debug("Dropped "+droppedTransactions+" referenced transactions and evicted "+evictedClasses+" class fragments.");
                     }
                 } catch (Throwable t){
-                    LOGGER.warn("Exception when running Persistence cleaner");
+                    LOGGER.warn("Exception when running Persistence cleaner", t);
                 } finally {
-                    if(!Thread.currentThread().isInterrupted())
-                        execService.schedule(this, delay, TimeUnit.SECONDS);
+                    delay = configuration.getCleanerIntervalSeconds();
+                    //runs start delay apart: a hash indexed behind the cursor of a run is checked by the next one,
+                    //at most delay after it was indexed
+                    long wait = Math.max(0, delay * 1000L - (System.currentTimeMillis() - started));
+                    if(!Thread.currentThread().isInterrupted() && !execService.isShutdown())
+                        execService.schedule(this, wait, TimeUnit.MILLISECONDS);
                 }
                 return null;
             }
+
+            //ClassFragments whose head transaction was collected can be reloaded from the registry
+            private int evictClassFragments(int budget) {
+                ClassStore registry = classRegistry;
+                if(registry==null){
+                    return 0;
+                }
+                if(classCursor==null || !classCursor.hasNext()){
+                    classCursor = classFragments.entrySet().iterator();
+                }
+                int evicted = 0;
+                for(int i=0;i<budget && classCursor.hasNext();i++){
+                    Map.Entry<TryteHash, ClassFragment> entry = classCursor.next();
+                    if(entry.getValue().getHeadTransaction()==null && registry.contains(entry.getKey())){
+                        classCursor.remove();
+                        classReferences.remove(entry.getValue());
+                        forget(classEviction, entry.getKey());
+                        evicted++;
+                    }
+                }
+                return evicted;
+            }
         };
 
     }
@@ -0,0 +1,32 @@
+package org.iota.ict.ixi.serialization;
+
+/**
+ * What to do when an ingestion queue (gossip events or EEE requests) reaches its capacity.
+ */
+public enum SheddingPolicy {
+
+    /**
+     * Wait until there is room in the queue. Gossip events are never lost, but the Ict thread dispatching
+     * gossip is blocked meanwhile: the whole node stalls when ingestion falls behind.
+     * EEE request queues are owned by the Ict and cannot block: they stay unbounded with this policy.
+     */
+    BLOCK,
+
+    /**
+     * Drop the oldest queued event to make room for the new one (default).
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop incoming bundles that contain no ClassFragment and no DataFragment of a class registered
+     * with {@link SerializationModule#registerDataListener(String, String)}, otherwise drop the oldest queued event
+     * that is not listened (the incoming event when all queued events are listened).
+     * Applies to gossip only, EEE requests are handled as with DROP_OLDEST.
+     */
+    DROP_NON_LISTENED_CLASSES,
+
+    /**
+     * Keep one event out of {@link Configuration#getSampleRate()} (in place of the oldest one) and drop the others.
+     */
+    SAMPLE
+}
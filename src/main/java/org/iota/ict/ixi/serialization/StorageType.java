@@ -0,0 +1,19 @@
+package org.iota.ict.ixi.serialization;
+
+/**
+ * Where Persistence keeps the postings of its indexes (see {@link Configuration#getStorage()}).
+ */
+public enum StorageType {
+
+    /**
+     * Off-heap buffers: fastest lookups, the indexes are rebuilt (or restored from a checkpoint) at start.
+     */
+    MEMORY,
+
+    /**
+     * Append-only log files in {@link Configuration#getStorageDirectory()}, compacted in the background.
+     * Only the hash directory stays in memory: the indexes survive restarts and large nodes keep a bounded heap.
+     * Lookups read the postings from disk and rebuild the DataFragments from the Ict.
+     */
+    LOG
+}
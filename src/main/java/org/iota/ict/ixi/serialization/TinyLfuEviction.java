@@ -0,0 +1,95 @@
+package org.iota.ict.ixi.serialization;
+
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+/**
+ * Evicts the least frequently used of the {@value #SAMPLE} least recently used keys.
+ *
+ * Use frequencies are estimated by a count-min sketch of 4 rows: the estimate of a key is the smallest
+ * of its 4 counters. Counters are halved every {@value #RESET_FACTOR} times the sketch width uses,
+ * so that old popularity fades.
+ */
+class TinyLfuEviction<K> extends LruEviction<K> {
+
+    static final int SAMPLE = 8;
+    private static final int ROWS = 4;
+    private static final int WIDTH = 1 << 14;
+    private static final int RESET_FACTOR = 10;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int[][] sketch = new int[ROWS][WIDTH];
+    private int uses;
+
+    @Override
+    public void onInsert(K key) {
+        super.onInsert(key);
+        increment(key);
+    }
+
+    @Override
+    public void onAccess(K key) {
+        super.onAccess(key);
+        if (order.containsKey(key)) {
+            increment(key);
+        }
+    }
+
+    @Override
+    public K victim(Predicate<K> pinned) {
+        K victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        int sampled = 0;
+        for (Iterator<K> iterator = order.keySet().iterator(); iterator.hasNext() && sampled < SAMPLE; ) {
+            K key = iterator.next();
+            if (pinned.test(key)) {
+                continue;
+            }
+            sampled++;
+            int frequency = frequency(key);
+            if (frequency < victimFrequency) {
+                victim = key;
+                victimFrequency = frequency;
+            }
+        }
+        if (victim != null) {
+            order.remove(victim);
+        }
+        return victim;
+    }
+
+    int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < ROWS; row++) {
+            min = Math.min(min, sketch[row][index(hash, row)]);
+        }
+        return min;
+    }
+
+    private void increment(K key) {
+        int hash = spread(key.hashCode());
+        for (int row = 0; row < ROWS; row++) {
+            sketch[row][index(hash, row)]++;
+        }
+        if (++uses >= WIDTH * RESET_FACTOR) {
+            for (int[] counters : sketch) {
+                for (int i = 0; i < WIDTH; i++) {
+                    counters[i] >>>= 1;
+                }
+            }
+            uses /= 2;
+        }
+    }
+
+    private static int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x45D9F3B;
+        return (h ^ (h >>> 16)) & (WIDTH - 1);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+}
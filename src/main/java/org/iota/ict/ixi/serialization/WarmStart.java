@@ -0,0 +1,196 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.Ixi;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.iota.ict.model.transaction.Transaction;
+import org.iota.ict.utils.Trytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds the indexes from the fragments already stored in the Ict when the module starts.
+ *
+ * The last checkpoint, when there is one, is restored first: the fragments it restores are marked as seen
+ * and skipped by the rebuild.
+ * Fragment heads are found by tag (the tags set by the fragment builders), parsed in parallel on a fork-join pool
+ * and bulk-loaded: ClassFragments first, then the DataFragments of known classes.
+ * Gossip keeps being ingested and queries keep being served while the rebuild runs.
+ * Listeners are not notified of the fragments loaded here.
+ */
+class WarmStart extends Thread {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmStart.class);
+
+    private static final String[] CLASS_HEAD_TAGS = {
+            tag(new byte[]{0, 0, 0, 0, 1, 0}),
+            tag(new byte[]{0, 0, 0, 1, 1, 0})
+    };
+    private static final String[] DATA_HEAD_TAGS = {
+            tag(new byte[]{0, 0, 0, 0, 0, 0, 1, 0, 0}),
+            tag(new byte[]{0, 0, 0, 0, 0, 1, 1, 0, 0})
+    };
+
+    private final Ixi ixi;
+    private final SerializationModule.Persistence persistence;
+    private final OrphanDataFragmentBuffer orphanDataFragments;
+    private final SeenFragmentCache seenFragments;
+    private final int parallelism;
+    private final File checkpointFile;
+
+    private final LongAdder classFragmentsLoaded;
+    private final LongAdder dataFragmentsLoaded;
+    private final LongAdder dataFragmentsRestored;
+    private volatile boolean complete;
+
+    WarmStart(Ixi ixi, SerializationModule.Persistence persistence, OrphanDataFragmentBuffer orphanDataFragments,
+              SeenFragmentCache seenFragments, Metrics metrics, int parallelism, File checkpointFile) {
+        this.ixi = ixi;
+        this.persistence = persistence;
+        this.orphanDataFragments = orphanDataFragments;
+        this.seenFragments = seenFragments;
+        this.parallelism = parallelism;
+        this.checkpointFile = checkpointFile;
+        classFragmentsLoaded = metrics.counter("warmStart.classFragments");
+        dataFragmentsLoaded = metrics.counter("warmStart.dataFragments");
+        dataFragmentsRestored = metrics.counter("warmStart.restoredDataFragments");
+        metrics.gauge("warmStart.complete", () -> complete ? 1 : 0);
+        setName("Serialization-warmStart");
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (checkpointFile != null) {
+                restore(checkpointFile);
+            }
+            if (parallelism > 0) {
+                long start = System.currentTimeMillis();
+                LOGGER.info("Rebuilding indexes from the fragments stored in the Ict...");
+                load(findByTags(CLASS_HEAD_TAGS), findByTags(DATA_HEAD_TAGS));
+                LOGGER.info("Indexes rebuilt in " + (System.currentTimeMillis() - start) + "ms: "
+                        + classFragmentsLoaded.sum() + " ClassFragments, " + dataFragmentsLoaded.sum() + " DataFragments.");
+            } else {
+                complete = true;
+            }
+        } catch (InterruptedException e) {
+            LOGGER.info("Index rebuild interrupted.");
+        }
+    }
+
+    void restore(File checkpointFile) {
+        long start = System.currentTimeMillis();
+        try {
+            if (persistence.restore(checkpointFile, dataFragment -> {
+                seenFragments.markSeen(dataFragment.getHeadTransactionHash());
+                dataFragmentsRestored.increment();
+            })) {
+                LOGGER.info("Checkpoint " + checkpointFile + " restored in " + (System.currentTimeMillis() - start) + "ms: "
+                        + dataFragmentsRestored.sum() + " DataFragments.");
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to restore checkpoint " + checkpointFile + ", rebuilding from the Ict only", e);
+        }
+    }
+
+    /**
+     * Parse and bulk-load the fragments starting at classHeads and dataHeads.
+     * Fragments already ingested from gossip are skipped, DataFragments of unknown classes are parked as orphans.
+     */
+    void load(Collection<Transaction> classHeads, Collection<Transaction> dataHeads) throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ClassFragment> classFragments = pool.submit(() -> classHeads.parallelStream()
+                    .map(this::parseClassFragment)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+            List<Transaction> heads = new ArrayList<>(dataHeads.size());
+            for (Transaction dataHead : dataHeads) {
+                if (!seenFragments.isSeen(dataHead.hash)) {
+                    heads.add(dataHead);
+                }
+            }
+            for (ClassFragment classFragment : classFragments) {
+                persistence.persist(classFragment);
+                seenFragments.markSeen(classFragment.getHeadTransactionHash());
+                //DataFragments gossiped before their class during the rebuild
+                heads.addAll(orphanDataFragments.replay(classFragment.getClassHash()));
+            }
+            classFragmentsLoaded.add(classFragments.size());
+            LOGGER.info("Loaded " + classFragments.size() + " ClassFragments, parsing " + heads.size() + " DataFragments...");
+
+            List<DataFragment> dataFragments = pool.submit(() -> heads.parallelStream()
+                    .map(this::parseDataFragment)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+            persistence.persist(dataFragments);
+            for (DataFragment dataFragment : dataFragments) {
+                seenFragments.markSeen(dataFragment.getHeadTransactionHash());
+            }
+            dataFragmentsLoaded.add(dataFragments.size());
+        } catch (ExecutionException e) {
+            LOGGER.warn("Failed to rebuild indexes", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        //not reached when interrupted: the indexes are incomplete
+        complete = true;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    private Collection<Transaction> findByTags(String[] tags) {
+        List<Transaction> ret = new ArrayList<>();
+        for (String tag : tags) {
+            ret.addAll(ixi.findTransactionsByTag(tag));
+        }
+        return ret;
+    }
+
+    private ClassFragment parseClassFragment(Transaction head) {
+        if (seenFragments.isSeen(head.hash)) {
+            return null;
+        }
+        try {
+            ClassFragment classFragment = new ClassFragment(head);
+            classFragment.getClassHash();
+            return classFragment;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            LOGGER.debug("Ignoring invalid class fragment " + head.hash + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private DataFragment parseDataFragment(Transaction head) {
+        ClassFragment classFragment = persistence.search(head.address());
+        if (classFragment == null) {
+            //indexed once its class is gossiped
+            orphanDataFragments.park(head.address(), head);
+            return null;
+        }
+        try {
+            return new DataFragment(head, classFragment, persistence.payloads);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Ignoring invalid data fragment " + head.hash + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String tag(byte[] trits) {
+        return Trytes.padRight(Trytes.fromTrits(trits), Transaction.Field.TAG.tryteLength);
+    }
+}
@@ -19,6 +19,14 @@ public abstract class BundleFragment {
         init(headTransaction);
     }
 
+    /**
+     * Fragment restored from stored metadata: the head transaction is not available.
+     */
+    protected BundleFragment(String headTransactionHash) {
+        txHeadHash = headTransactionHash;
+        headTransaction = new WeakReference<>(null);
+    }
+
 
     protected void init(Transaction headTransaction){
         if(!hasHeadFlag(headTransaction)){
@@ -42,6 +50,10 @@ public abstract class BundleFragment {
         this.headTransaction = new WeakReference<>(headTransaction);
     }
 
+    public String getHeadTransactionHash() {
+        return txHeadHash;
+    }
+
     public Transaction getHeadTransaction() {
         return headTransaction.get();
     }
@@ -1,6 +1,8 @@
 package org.iota.ict.ixi.serialization.model;
 
 import com.iota.curl.IotaCurlHash;
+import org.iota.ict.ixi.serialization.util.FragmentFlags;
+import org.iota.ict.ixi.serialization.util.TryteHash;
 import org.iota.ict.ixi.serialization.util.Utils;
 import org.iota.ict.model.transaction.Transaction;
 import org.iota.ict.model.transaction.TransactionBuilder;
@@ -27,6 +29,7 @@ public class ClassFragment extends BundleFragment {
     public static final int OFFSET_OF_ATTRIBUTECOUNT_FIELD = OFFSET_OF_REFCOUNT_FIELD+LENGTH_OF_REFCOUNT_FIELD;
     public static final int LENGTH_OF_ATTRIBUTECOUNT_FIELD = 27;
     private static final int LENGTH_OF_HEADER = OFFSET_OF_ATTRIBUTECOUNT_FIELD+LENGTH_OF_ATTRIBUTECOUNT_FIELD;
+    private static final String NULL_HASH_STRING = TryteHash.NULL_HASH.toString();
 
     private final int dataSize;
     private final int refCount;
@@ -35,7 +38,10 @@ public class ClassFragment extends BundleFragment {
     private String className;
     private final int[] attributesLength;
     private final String[] attributesName;
-    private final String[] referencedClassHash;
+    private final TryteHash[] referencedClassHash;
+    //unpacked lazily by getClassHashForReference, a racing thread at worst unpacks the same hash again
+    private final String[] referencedClassHashString;
+    private TryteHash classTryteHash;
     private final List<Integer> variableSizeAttributes = new ArrayList<>();
 
     //we cap the number of attributes in a class so that classFragment fit in one tx.
@@ -74,31 +80,58 @@ public class ClassFragment extends BundleFragment {
         }
 
         //parse references metadata
-        referencedClassHash = new String[refCount];
+        referencedClassHash = new TryteHash[refCount];
+        referencedClassHashString = new String[refCount];
         Transaction tx = headTransaction;
         int i = 0;
         while( i<refCount ){
             if(i==0){
-                referencedClassHash[i] = tx.extraDataDigest();
+                referencedClassHash[i] = TryteHash.of(tx.extraDataDigest());
                 i++;
             }else{
-                referencedClassHash[i] = tx.address();
+                referencedClassHash[i] = TryteHash.of(tx.address());
                 i++;
                 if(i<refCount){
-                    referencedClassHash[i] = tx.extraDataDigest();
+                    referencedClassHash[i] = TryteHash.of(tx.extraDataDigest());
                     i++;
                 }
             }
             tx = tx.getTrunk();
             if(tx==null){
                 while(i<refCount){
-                    referencedClassHash[i] = Trytes.NULL_HASH;
+                    referencedClassHash[i] = TryteHash.NULL_HASH;
                     i++;
                 }
             }
         }
     }
 
+    /**
+     * Restore a ClassFragment from the metadata extracted by {@link #ClassFragment(Transaction)}.
+     * The transactions of the fragment are not required.
+     */
+    public ClassFragment(String headTransactionHash, String className, int dataSize, int[] attributesLength,
+                         String[] attributesName, String[] referencedClassHash, String classHash) {
+        super(headTransactionHash);
+        this.className = className;
+        this.dataSize = dataSize;
+        this.refCount = referencedClassHash.length;
+        this.attributeCount = attributesLength.length;
+        this.attributesLength = attributesLength;
+        this.attributesName = attributesName;
+        this.referencedClassHash = new TryteHash[refCount];
+        this.referencedClassHashString = referencedClassHash.clone();
+        for(int i=0;i<refCount;i++){
+            this.referencedClassHash[i] = TryteHash.of(referencedClassHash[i]);
+        }
+        this.classHash = classHash;
+        for(int i=0;i<attributeCount;i++){
+            if(attributesLength[i]==0){
+                variableSizeAttributes.add(i);
+            }
+        }
+    }
+
     public boolean hasTailFlag(Transaction transaction){
         return isTail(transaction);
     }
@@ -118,6 +151,13 @@ public class ClassFragment extends BundleFragment {
         return classHash;
     }
 
+    public TryteHash getClassTryteHash(){
+        if(classTryteHash==null){
+            classTryteHash = TryteHash.of(getClassHash());
+        }
+        return classTryteHash;
+    }
+
     public int getDataSize() {
         return dataSize;
     }
@@ -130,6 +170,21 @@ public class ClassFragment extends BundleFragment {
         return attributeCount;
     }
 
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the tryte length of the attribute at attributeIndex (0 for a variable size attribute)
+     */
+    public int getAttributeLength(int attributeIndex) {
+        return attributesLength[attributeIndex];
+    }
+
+    public String getAttributeName(int attributeIndex) {
+        return attributesName[attributeIndex];
+    }
+
     private String computeClassHash(){
         StringBuilder sb = new StringBuilder(Trytes.padRight(className,27));
         int i = 0;
@@ -151,22 +206,38 @@ public class ClassFragment extends BundleFragment {
     }
 
     public static boolean isTail(Transaction transaction) {
-        return transaction!=null && Trytes.toTrits(transaction.tag())[3] == 1;
+        return FragmentFlags.isClassTail(FragmentFlags.of(transaction));
     }
 
     public static boolean isHead(Transaction transaction) {
-        return transaction!=null && Trytes.toTrits(transaction.tag())[4] == 1;
+        return FragmentFlags.isClassHead(FragmentFlags.of(transaction));
+    }
+
+    public String getClassHashForReference(int index) {
+        if(index<0 || index>=refCount){
+            return NULL_HASH_STRING;
+        }
+        String ret = referencedClassHashString[index];
+        if(ret==null){
+            ret = referencedClassHash[index].toString();
+            referencedClassHashString[index] = ret;
+        }
+        return ret;
     }
 
-     public String getClassHashForReference(int index) {
-        try {
-            return referencedClassHash[index];
-        }catch (ArrayIndexOutOfBoundsException e){
-            return Trytes.NULL_HASH;
+    public TryteHash getClassTryteHashForReference(int index) {
+        if(index<0 || index>=refCount){
+            return TryteHash.NULL_HASH;
         }
+        return referencedClassHash[index];
     }
 
     public boolean isReferencing(int referenceIndex, String anotherClasshash){
+        if(!TryteHash.isValid(anotherClasshash)) return false;
+        return isReferencing(referenceIndex, TryteHash.of(anotherClasshash));
+    }
+
+    public boolean isReferencing(int referenceIndex, TryteHash anotherClasshash){
         if(anotherClasshash==null) return false;
         if(referenceIndex<0){
             for(int i=0;i<refCount;i++){
@@ -174,8 +245,9 @@ public class ClassFragment extends BundleFragment {
             }
             return false;
         }
-        return anotherClasshash.equals(getClassHashForReference(referenceIndex));
+        return anotherClasshash.equals(getClassTryteHashForReference(referenceIndex));
     }
+
     protected int getTryteLengthForAttribute(int attributeIndex){
         return attributesLength[attributeIndex];
     }
@@ -1,10 +1,15 @@
 package org.iota.ict.ixi.serialization.model;
 
+import org.iota.ict.ixi.serialization.util.FragmentFlags;
+import org.iota.ict.ixi.serialization.util.TryteCodec;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.iota.ict.ixi.serialization.util.TryteView;
 import org.iota.ict.model.transaction.Transaction;
 import org.iota.ict.model.transaction.TransactionBuilder;
 import org.iota.ict.utils.Trytes;
 
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.iota.ict.utils.Trytes.NULL_HASH;
@@ -15,35 +20,126 @@ public class DataFragment extends BundleFragment {
 
     private final ClassFragment classFragment;
 
+    //read when the transactions are gone, may be null
+    private final PayloadStore payloadStore;
+
     //store the offset and length of each attribute
     private final int[][] offsetAndLength;
 
     public DataFragment(Transaction headTransaction, ClassFragment classFragment){
+        this(headTransaction, classFragment, null);
+    }
+
+    /**
+     * @param payloadStore read once the transactions of the fragment are no longer available, may be null
+     */
+    public DataFragment(Transaction headTransaction, ClassFragment classFragment, PayloadStore payloadStore){
         super(headTransaction); //we keep a WeakReference to the transaction
 
         this.classFragment = classFragment;
-        offsetAndLength = new int[classFragment.getAttributeCount()][2];
+        this.payloadStore = payloadStore;
+        //the flattened message is not kept by the fragment (see MessageCache)
+        offsetAndLength = computeOffsetAndLength(flattenMessage());
+    }
+
+    /**
+     * Fragment restored from payloadStore: its transactions are no longer available.
+     * @throws IllegalArgumentException when the payload of the fragment is not stored
+     */
+    public DataFragment(String headTransactionHash, ClassFragment classFragment, PayloadStore payloadStore){
+        super(headTransactionHash);
+        String message = payloadStore==null ? null : payloadStore.loadMessage(headTransactionHash);
+        if(message==null){
+            throw new IllegalArgumentException("payload of " + headTransactionHash + " is not stored");
+        }
+        this.classFragment = classFragment;
+        this.payloadStore = payloadStore;
+        offsetAndLength = computeOffsetAndLength(message.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param message the message trytes of the fragment, null when they are not available
+     */
+    private int[][] computeOffsetAndLength(byte[] message){
+        int[][] offsetAndLength = new int[classFragment.getAttributeCount()][2];
         int currentOffset = 0;
         for(int i=0;i<offsetAndLength.length;i++){
             int attributeLength = classFragment.getTryteLengthForAttribute(i);
             if(attributeLength==0){
                 //variableSize attribute. Effective size is stored in the 6 first trits
-                attributeLength = Trytes.toNumber(getSlice(currentOffset, 6)).intValue();
+                attributeLength = message==null ? 0 : Trytes.toNumber(slice(message, currentOffset, 6)).intValue();
                 currentOffset += 6;
             }
             offsetAndLength[i] = new int[]{currentOffset, attributeLength};
             currentOffset += attributeLength;
         }
+        return offsetAndLength;
+    }
+
+    /**
+     * @return the length of the attributes in the message (including the size of variable size attributes)
+     */
+    private int messageLength(){
+        if(offsetAndLength.length==0){
+            return 0;
+        }
+        int[] last = offsetAndLength[offsetAndLength.length-1];
+        return last[0]+last[1];
+    }
+
+    /**
+     * @return the message trytes of the fragment, null when its transactions are not available nor stored
+     */
+    private byte[] message(){
+        MessageCache cache = MessageCache.get();
+        byte[] ret = cache.get(getHeadTransactionHash());
+        if(ret==null){
+            ret = flattenMessage();
+            if(ret!=null){
+                //the message fields of the transactions past the attributes are not kept
+                if(ret.length>messageLength()){
+                    ret = Arrays.copyOf(ret, messageLength());
+                }
+                cache.put(getHeadTransactionHash(), ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Concat the message fields of the transactions of the fragment, from head to tail, in a single walk.
+     * @return the message trytes, null when a transaction is not available and the payload is not stored
+     */
+    private byte[] flattenMessage(){
+        List<String> signatureFragments = new ArrayList<>();
+        Transaction tx = getHeadTransaction();
+        while(tx!=null){
+            signatureFragments.add(tx.signatureFragments());
+            if(isTail(tx)){
+                byte[] ret = new byte[signatureFragments.size()*Transaction.Field.SIGNATURE_FRAGMENTS.tryteLength];
+                int offset = 0;
+                for(String trytes:signatureFragments){
+                    for(int i=0;i<trytes.length();i++){
+                        ret[offset++] = (byte) trytes.charAt(i);
+                    }
+                }
+                return offset==ret.length ? ret : Arrays.copyOf(ret, offset);
+            }
+            tx = tx.getTrunk();
+        }
+        String stored = payloadStore==null ? null : payloadStore.loadMessage(getHeadTransactionHash());
+        return stored==null ? null : stored.getBytes(StandardCharsets.US_ASCII);
     }
 
     public String getReference(int index){
+        int referenceIndex = index;
         index++;  //first address field store the classhash so it is skipped
         Transaction tx = getHeadTransaction();
-        if(tx==null) return NULL_HASH;
+        if(tx==null) return storedReference(referenceIndex);
         while(index>1){
             tx = tx.getTrunk();
             if(tx==null) {
-                return NULL_HASH;
+                return storedReference(referenceIndex);
             }
             index -=2;
         }
@@ -51,6 +147,14 @@ public class DataFragment extends BundleFragment {
         return tx.extraDataDigest();
     }
 
+    /**
+     * @return the transaction hash referenced at index, {@link TryteHash#NULL_HASH} when not available
+     * or not a valid hash
+     */
+    public TryteHash getReferenceTryteHash(int index){
+        return TryteHash.of(getReference(index), TryteHash.NULL_HASH);
+    }
+
     public boolean hasTailFlag(Transaction transaction){
         return isTail(transaction);
     }
@@ -60,14 +164,19 @@ public class DataFragment extends BundleFragment {
     }
 
     public static boolean isTail(Transaction transaction){
-        return transaction!=null && Trytes.toTrits(transaction.tag())[5]==1;
+        return FragmentFlags.isDataTail(FragmentFlags.of(transaction));
     }
     public static boolean isHead(Transaction transaction){
-        return Trytes.toTrits(transaction.tag())[6]==1;
+        return FragmentFlags.isDataHead(FragmentFlags.of(transaction));
+    }
+
+    private String storedReference(int index){
+        String reference = payloadStore==null ? null : payloadStore.loadReference(getHeadTransactionHash(), index);
+        return reference==null ? NULL_HASH : reference;
     }
 
     public String getClassHash() {
-        if(getHeadTransaction()==null) return NULL_HASH;
+        if(getHeadTransaction()==null) return payloadStore==null ? NULL_HASH : classFragment.getClassHash();
         return getHeadTransaction().address();
     }
 
@@ -86,20 +195,109 @@ public class DataFragment extends BundleFragment {
         return getSlice(startIndex, length);
     }
 
+    /**
+     * Same as {@link #getAttributeAsTryte(int)} without copying the trytes, when the message of the fragment
+     * is available. Prefer it for large attributes and for comparisons.
+     * @param attributeIndex : index of an attribute
+     * @return a view over the value of this attribute, empty when the value is not available.
+     * @throws ArrayIndexOutOfBoundsException when attributeIndex is not in range
+     */
+    public TryteView getAttributeView(int attributeIndex) {
+        int startIndex = offsetAndLength[attributeIndex][0];
+        int length = offsetAndLength[attributeIndex][1];
+        byte[] message = message();
+        if(message!=null && startIndex+length<=message.length){
+            return TryteView.of(message, startIndex, length);
+        }
+        return TryteView.of(getSlice(startIndex, length));
+    }
+
+    /**
+     * @param attributeIndex : index of an attribute
+     * @return the value of this attribute decoded as a balanced ternary number (0 when the value is not available)
+     * @throws ArrayIndexOutOfBoundsException when attributeIndex is not in range
+     * @throws ArithmeticException when the value does not fit in a long
+     */
+    public long getAttributeAsLong(int attributeIndex) {
+        return TryteCodec.toLong(getAttributeView(attributeIndex));
+    }
+
+    /**
+     * @see #getAttributeAsLong(int)
+     * @throws ArithmeticException when the value does not fit in an int
+     */
+    public int getAttributeAsInt(int attributeIndex) {
+        return Math.toIntExact(getAttributeAsLong(attributeIndex));
+    }
+
+    /**
+     * Write the trits of this attribute (3 per tryte) to target.
+     * @return the number of trits written (0 when the value is not available)
+     * @throws ArrayIndexOutOfBoundsException when attributeIndex is not in range
+     * @throws IndexOutOfBoundsException when target is too small
+     */
+    public int getAttributeAsTrits(int attributeIndex, byte[] target) {
+        return TryteCodec.toTrits(getAttributeView(attributeIndex), target, 0);
+    }
+
+    /**
+     * @return the bytes encoded in this attribute (2 trytes per byte), see {@link Builder#setAttributeAsBytes(int, byte[])}
+     * @throws ArrayIndexOutOfBoundsException when attributeIndex is not in range
+     * @throws IllegalArgumentException when the attribute does not encode bytes
+     */
+    public byte[] getAttributeAsBytes(int attributeIndex) {
+        return TryteCodec.toBytes(getAttributeView(attributeIndex));
+    }
+
+    /**
+     * @return the text encoded in this attribute without its padding, see {@link Builder#setAttributeAsText(int, String)}
+     * @throws ArrayIndexOutOfBoundsException when attributeIndex is not in range
+     * @throws IllegalArgumentException when the attribute does not encode bytes
+     */
+    public String getAttributeAsText(int attributeIndex) {
+        return TryteCodec.toText(getAttributeView(attributeIndex));
+    }
+
+    /**
+     * @return the attribute trytes of the fragment message (including the size of variable size attributes),
+     * or the empty string when the data is not available
+     */
+    public String getMessageTrytes() {
+        return getSlice(0, messageLength());
+    }
+
+    /**
+     * Same as {@link #getMessageTrytes()}, without padding what is missing.
+     * @return the attribute trytes of the fragment message, or null when a transaction of the fragment
+     * is not available and the payload is not stored
+     */
+    public String getCompleteMessageTrytes() {
+        if(message()==null){
+            return null;
+        }
+        return getSlice(0, messageLength());
+    }
+
     /**
      * Extract a slice from the fragment message (i.e. concat of all message fields of fragment)
      * @param startIndex slice start index
      * @param length slice length
      * @return the tryte string starting at startIndex with specified length or the empty string
-     * when the data is not available (because RingTangle may drop old transactions).
+     * when the data is not available (because RingTangle may drop old transactions) nor stored in the PayloadStore.
      */
     private String getSlice(int startIndex, int length) {
+        byte[] message = message();
+        if(message!=null){
+            return slice(message, startIndex, length);
+        }
+        //some transactions are missing: read what is left of the chain
+        int messageOffset = startIndex;
         StringBuilder sb = new StringBuilder();
         Transaction tx = getHeadTransaction();
-        if(tx==null) return "";
+        if(tx==null) return storedSlice(messageOffset, length, "");
         while(startIndex>Transaction.Field.SIGNATURE_FRAGMENTS.tryteLength){
             tx = tx.getTrunk();
-            if(tx==null) return Trytes.padRight("",length);
+            if(tx==null) return storedSlice(messageOffset, length, Trytes.padRight("",length));
             startIndex = startIndex-Transaction.Field.SIGNATURE_FRAGMENTS.tryteLength;
         }
         if(startIndex+length<Transaction.Field.SIGNATURE_FRAGMENTS.tryteLength){
@@ -109,7 +307,7 @@ public class DataFragment extends BundleFragment {
         int remaining = length -sb.length();
         while(remaining>0) {
             tx = tx.getTrunk();
-            if (tx == null) return "";
+            if (tx == null) return storedSlice(messageOffset, length, "");
             if(remaining>Transaction.Field.SIGNATURE_FRAGMENTS.tryteLength){
                 remaining -= Transaction.Field.SIGNATURE_FRAGMENTS.tryteLength;
                 sb.append(tx.signatureFragments());
@@ -121,6 +319,23 @@ public class DataFragment extends BundleFragment {
         return sb.toString();
     }
 
+    private static String slice(byte[] message, int startIndex, int length) {
+        if(startIndex+length>message.length){
+            return Trytes.padRight(new String(message, Math.min(startIndex, message.length),
+                    Math.max(0, message.length-startIndex), StandardCharsets.US_ASCII), length);
+        }
+        return new String(message, startIndex, length, StandardCharsets.US_ASCII);
+    }
+
+    private String storedSlice(int startIndex, int length, String notStored) {
+        String message = payloadStore==null ? null : payloadStore.loadMessage(getHeadTransactionHash());
+        if(message==null) return notStored;
+        if(startIndex+length>message.length()){
+            return Trytes.padRight(message.substring(Math.min(startIndex, message.length())), length);
+        }
+        return message.substring(startIndex, startIndex+length);
+    }
+
     public static class Builder extends BundleFragment.Builder<DataFragment> {
 
         private final Map<Integer, String> referenceHashes = new HashMap<>();
@@ -256,6 +471,31 @@ public class DataFragment extends BundleFragment {
             }
             return this;
         }
+
+        /**
+         * Encode value as a balanced ternary number, on the length of the attribute
+         * (on as few trytes as possible for a variable size attribute).
+         * @throws IllegalArgumentException when value does not fit in the attribute
+         */
+        public Builder setAttributeAsLong(int i, long value) {
+            int length = classFragment.getTryteLengthForAttribute(i);
+            this.data.put(i, TryteCodec.fromLong(value, length==0 ? TryteCodec.tryteLength(value) : length));
+            return this;
+        }
+
+        /**
+         * Encode data on 2 trytes per byte. Fixed size attributes are padded or truncated as other values.
+         */
+        public Builder setAttributeAsBytes(int i, byte[] data) {
+            return setAttribute(i, data==null ? null : TryteCodec.fromBytes(data));
+        }
+
+        /**
+         * Encode text as UTF-8 bytes (ASCII text takes 2 trytes per char), see {@link #setAttributeAsBytes(int, byte[])}.
+         */
+        public Builder setAttributeAsText(int i, String text) {
+            return setAttribute(i, text==null ? null : TryteCodec.fromText(text));
+        }
     }
 
     public static class Prepared {
@@ -0,0 +1,81 @@
+package org.iota.ict.ixi.serialization.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Flattened messages of the DataFragments (one byte per tryte) by head transaction hash, shared by all fragments.
+ *
+ * The cache is a LRU bounded by the total size of the messages: a fragment does not hold its message,
+ * it is flattened again from the transactions (or the payload store) once evicted.
+ */
+public final class MessageCache {
+
+    private static final MessageCache INSTANCE = new MessageCache(Long.getLong("serialization.ixi.messageCacheMegabytes", 64) << 20);
+
+    private final LinkedHashMap<String, byte[]> messages = new LinkedHashMap<>(16, 0.75f, true);
+    private long capacityBytes;
+    private long bytes;
+
+    MessageCache(long capacityBytes) {
+        this.capacityBytes = Math.max(0, capacityBytes);
+    }
+
+    static MessageCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Bound the messages cached for all DataFragments to capacityBytes, 0 disables the cache.
+     */
+    public static void setCapacity(long capacityBytes) {
+        INSTANCE.resize(capacityBytes);
+    }
+
+    /**
+     * Release the messages cached for all DataFragments, e.g. when the module terminates.
+     */
+    public static void clear() {
+        INSTANCE.evictAll();
+    }
+
+    synchronized byte[] get(String headTransactionHash) {
+        return messages.get(headTransactionHash);
+    }
+
+    synchronized void put(String headTransactionHash, byte[] message) {
+        if (message.length > capacityBytes) {
+            return;
+        }
+        byte[] previous = messages.put(headTransactionHash, message);
+        bytes += message.length - (previous == null ? 0 : previous.length);
+        evict();
+    }
+
+    synchronized void resize(long capacityBytes) {
+        this.capacityBytes = Math.max(0, capacityBytes);
+        evict();
+    }
+
+    synchronized void evictAll() {
+        messages.clear();
+        bytes = 0;
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized int size() {
+        return messages.size();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, byte[]>> iterator = messages.entrySet().iterator();
+        while (bytes > capacityBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.iota.ict.ixi.serialization.model;
+
+/**
+ * Durable copy of the message and references of DataFragments, read by a {@link DataFragment}
+ * once its transactions are no longer available (the RingTangle drops old transactions).
+ */
+public interface PayloadStore {
+
+    /**
+     * @return the message trytes of the DataFragment with head transaction headTransactionHash
+     * (concat of the message fields of its transactions, attributes only), null when not stored
+     */
+    String loadMessage(String headTransactionHash);
+
+    /**
+     * @return the transaction hash referenced at index, null when not stored
+     */
+    String loadReference(String headTransactionHash, int index);
+}
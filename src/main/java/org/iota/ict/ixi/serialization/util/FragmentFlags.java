@@ -0,0 +1,81 @@
+package org.iota.ict.ixi.serialization.util;
+
+import org.iota.ict.model.transaction.Transaction;
+import org.iota.ict.utils.Trytes;
+
+/**
+ * Zero allocation decoding of the fragment flags stored in the tag (and of single trits of any tryte string).
+ *
+ * Only the trytes holding the requested trits are decoded, through tables precomputed from {@link Trytes#toTrits(String)}.
+ * Tag trits 3 to 5 are stored in tryte 1 and tag trit 6 in tryte 2.
+ */
+public final class FragmentFlags {
+
+    public static final int CLASS_TAIL = 1;     //tag[3]
+    public static final int CLASS_HEAD = 1 << 1;//tag[4]
+    public static final int DATA_TAIL = 1 << 2; //tag[5]
+    public static final int DATA_HEAD = 1 << 3; //tag[6]
+
+    public static final int ANY_HEAD = CLASS_HEAD | DATA_HEAD;
+    public static final int ANY = CLASS_TAIL | CLASS_HEAD | DATA_TAIL | DATA_HEAD;
+
+    private static final String ALPHABET = "9ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    //trits of each tryte, indexed by tryte char
+    private static final byte[][] TRITS = new byte[128][];
+    //flags encoded in tag trytes 1 and 2, indexed by tryte char
+    private static final int[] TAG_TRYTE_1 = new int[128];
+    private static final int[] TAG_TRYTE_2 = new int[128];
+
+    static {
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            char tryte = ALPHABET.charAt(i);
+            byte[] trits = Trytes.toTrits(String.valueOf(tryte));
+            TRITS[tryte] = trits;
+            TAG_TRYTE_1[tryte] = (trits[0] == 1 ? CLASS_TAIL : 0)
+                    | (trits[1] == 1 ? CLASS_HEAD : 0)
+                    | (trits[2] == 1 ? DATA_TAIL : 0);
+            TAG_TRYTE_2[tryte] = trits[0] == 1 ? DATA_HEAD : 0;
+        }
+    }
+
+    private FragmentFlags() {
+    }
+
+    /**
+     * @return the fragment flags of transaction, 0 when transaction is null
+     */
+    public static int of(Transaction transaction) {
+        return transaction == null ? 0 : ofTag(transaction.tag());
+    }
+
+    /**
+     * @return the fragment flags encoded in tag
+     */
+    public static int ofTag(String tag) {
+        return TAG_TRYTE_1[tag.charAt(1)] | TAG_TRYTE_2[tag.charAt(2)];
+    }
+
+    /**
+     * @return the trit at tritIndex in trytes
+     */
+    public static byte tritAt(String trytes, int tritIndex) {
+        return TRITS[trytes.charAt(tritIndex / 3)][tritIndex % 3];
+    }
+
+    public static boolean isClassHead(int flags) {
+        return (flags & CLASS_HEAD) != 0;
+    }
+
+    public static boolean isClassTail(int flags) {
+        return (flags & CLASS_TAIL) != 0;
+    }
+
+    public static boolean isDataHead(int flags) {
+        return (flags & DATA_HEAD) != 0;
+    }
+
+    public static boolean isDataTail(int flags) {
+        return (flags & DATA_TAIL) != 0;
+    }
+}
@@ -0,0 +1,78 @@
+package org.iota.ict.ixi.serialization.util;
+
+import org.iota.ict.model.transaction.Transaction;
+
+/**
+ * Single pass scanner locating the bundle fragments of a bundle.
+ *
+ * The trunk chain is walked once, from the bundle head to the bundle tail. Every transaction is classified
+ * and the boundaries of each complete fragment are reported to a {@link Listener}.
+ * A fragment head without a matching tail before the end of the bundle is ignored.
+ * When a new head of the same kind is found before the tail of the current fragment,
+ * the scan restarts from that new head. Heads of the other kind inside a fragment are ignored.
+ */
+public class FragmentScanner {
+
+    public interface Listener {
+        void onClassFragment(Transaction head, Transaction tail);
+
+        void onDataFragment(Transaction head, Transaction tail);
+    }
+
+    private FragmentScanner() {
+    }
+
+    /**
+     * Cheap pre-screen of a bundle, reading only the fragment flags of the transactions up to the bundle tail.
+     * @return 0 when at least one transaction carries a fragment flag,
+     *         otherwise the number of transactions inspected (none of them can be part of a fragment)
+     */
+    public static int screen(Transaction bundleHead) {
+        int inspected = 0;
+        Transaction t = bundleHead;
+        while (t != null) {
+            if ((FragmentFlags.of(t) & FragmentFlags.ANY) != 0) {
+                return 0;
+            }
+            inspected++;
+            if (t.isBundleTail) {
+                break;
+            }
+            t = t.getTrunk();
+        }
+        return inspected;
+    }
+
+    public static void scan(Transaction bundleHead, Listener listener) {
+        Transaction classHead = null;
+        Transaction dataHead = null;
+        Transaction t = bundleHead;
+        while (t != null) {
+            int flags = FragmentFlags.of(t);
+            if (classHead == null && dataHead == null) {
+                if (FragmentFlags.isClassHead(flags)) {
+                    classHead = t;
+                } else if (FragmentFlags.isDataHead(flags)) {
+                    dataHead = t;
+                }
+            } else if (classHead != null && FragmentFlags.isClassHead(flags)) {
+                classHead = t;
+            } else if (dataHead != null && FragmentFlags.isDataHead(flags)) {
+                dataHead = t;
+            }
+
+            if (classHead != null && FragmentFlags.isClassTail(flags)) {
+                listener.onClassFragment(classHead, t);
+                classHead = null;
+            } else if (dataHead != null && FragmentFlags.isDataTail(flags)) {
+                listener.onDataFragment(dataHead, t);
+                dataHead = null;
+            }
+
+            if (t.isBundleTail) {
+                break;
+            }
+            t = t.getTrunk();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.iota.ict.ixi.serialization.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Conversions between trytes and Java types without BigInteger nor intermediate Strings.
+ *
+ * Numbers are balanced ternary, least significant tryte (and trit) first, as {@link org.iota.ict.utils.Trytes#toNumber(String)}.
+ * Bytes are encoded on 2 trytes each (value % 27, then value / 27), the usual IOTA ASCII to trytes encoding.
+ */
+public final class TryteCodec {
+
+    private static final String ALPHABET = "9ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    //balanced value of each tryte char (N to Z are -13 to -1), Byte.MIN_VALUE for invalid chars
+    private static final byte[] BALANCED = new byte[128];
+
+    static {
+        Arrays.fill(BALANCED, Byte.MIN_VALUE);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            BALANCED[ALPHABET.charAt(i)] = (byte) (i > 13 ? i - 27 : i);
+        }
+    }
+
+    private TryteCodec() {
+    }
+
+    /**
+     * @return the balanced value of tryte, from -13 to 13
+     * @throws IllegalArgumentException when tryte is not a tryte char
+     */
+    public static int valueOf(char tryte) {
+        int value = tryte < 128 ? BALANCED[tryte] : Byte.MIN_VALUE;
+        if (value == Byte.MIN_VALUE) {
+            throw new IllegalArgumentException("'" + tryte + "' is not a tryte");
+        }
+        return value;
+    }
+
+    /**
+     * @throws ArithmeticException when the number does not fit in a long
+     */
+    public static long toLong(CharSequence trytes) {
+        long value = 0;
+        for (int i = trytes.length() - 1; i >= 0; i--) {
+            value = value * 27 + valueOf(trytes.charAt(i));
+        }
+        //13 trytes always fit in a long, longer numbers may have wrapped around
+        if (trytes.length() > 13 && !encodes(value, trytes)) {
+            throw new ArithmeticException("'" + trytes + "' does not fit in a long");
+        }
+        return value;
+    }
+
+    private static boolean encodes(long value, CharSequence trytes) {
+        for (int i = 0; i < trytes.length(); i++) {
+            int digit = lowestDigit(value);
+            if (digit != valueOf(trytes.charAt(i))) {
+                return false;
+            }
+            value = Math.floorDiv(value, 27) + (digit < 0 ? 1 : 0);
+        }
+        return value == 0;
+    }
+
+    /**
+     * @return the least significant balanced tryte of value
+     */
+    private static int lowestDigit(long value) {
+        int digit = (int) Math.floorMod(value, 27L);
+        return digit > 13 ? digit - 27 : digit;
+    }
+
+    /**
+     * @return value on tryteLength trytes
+     * @throws IllegalArgumentException when value does not fit in tryteLength trytes
+     */
+    public static String fromLong(long value, int tryteLength) {
+        char[] trytes = new char[tryteLength];
+        for (int i = 0; i < tryteLength; i++) {
+            int digit = lowestDigit(value);
+            trytes[i] = ALPHABET.charAt(digit < 0 ? digit + 27 : digit);
+            //floorDiv instead of (value - digit) / 27, which overflows next to Long.MIN_VALUE and Long.MAX_VALUE
+            value = Math.floorDiv(value, 27) + (digit < 0 ? 1 : 0);
+        }
+        if (value != 0) {
+            throw new IllegalArgumentException("value does not fit in " + tryteLength + " trytes");
+        }
+        return new String(trytes);
+    }
+
+    /**
+     * @return the number of trytes needed to encode value (at least 1)
+     */
+    public static int tryteLength(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 14;
+        }
+        int length = 1;
+        //the balanced range of n trytes is +-(27^n - 1) / 2
+        for (long max = 13; Math.abs(value) > max && length < 14; length++) {
+            max = max * 27 + 13;
+        }
+        return length;
+    }
+
+    /**
+     * Write the trits of trytes (3 per tryte, least significant first) to target at targetOffset.
+     * @return the number of trits written
+     * @throws IndexOutOfBoundsException when target is too small
+     */
+    public static int toTrits(CharSequence trytes, byte[] target, int targetOffset) {
+        int length = trytes.length() * 3;
+        if (targetOffset < 0 || targetOffset + length > target.length) {
+            throw new IndexOutOfBoundsException(length + " trits do not fit in target at " + targetOffset);
+        }
+        for (int i = 0; i < trytes.length(); i++) {
+            int value = valueOf(trytes.charAt(i));
+            for (int j = 0; j < 3; j++) {
+                int trit = ((value % 3) + 3) % 3;
+                if (trit == 2) {
+                    trit = -1;
+                }
+                target[targetOffset++] = (byte) trit;
+                value = (value - trit) / 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return the bytes encoded in trytes (a trailing odd tryte is ignored)
+     * @throws IllegalArgumentException when two trytes do not encode a byte (value above 255)
+     */
+    public static byte[] toBytes(CharSequence trytes) {
+        byte[] ret = new byte[trytes.length() / 2];
+        for (int i = 0; i < ret.length; i++) {
+            int low = ALPHABET.indexOf(trytes.charAt(2 * i));
+            int high = ALPHABET.indexOf(trytes.charAt(2 * i + 1));
+            if (low < 0 || high < 0) {
+                throw new IllegalArgumentException("'" + trytes.subSequence(2 * i, 2 * i + 2) + "' are not trytes");
+            }
+            int value = low + 27 * high;
+            if (value > 255) {
+                throw new IllegalArgumentException("'" + trytes.subSequence(2 * i, 2 * i + 2) + "' do not encode a byte");
+            }
+            ret[i] = (byte) value;
+        }
+        return ret;
+    }
+
+    /**
+     * @return bytes encoded on 2 trytes each
+     */
+    public static String fromBytes(byte[] bytes) {
+        char[] trytes = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xFF;
+            trytes[2 * i] = ALPHABET.charAt(value % 27);
+            trytes[2 * i + 1] = ALPHABET.charAt(value / 27);
+        }
+        return new String(trytes);
+    }
+
+    /**
+     * @return the UTF-8 (or ASCII) text encoded in trytes, trailing padding removed
+     */
+    public static String toText(CharSequence trytes) {
+        byte[] bytes = toBytes(trytes);
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] == 0) {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public static String fromText(String text) {
+        return fromBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
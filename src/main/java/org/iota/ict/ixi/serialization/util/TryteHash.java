@@ -0,0 +1,180 @@
+package org.iota.ict.ixi.serialization.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable 81 trytes (243 trits) hash, packed in base 27 into 7 longs (13 trytes per long).
+ *
+ * Equality compares 7 longs instead of 81 chars and the hashCode is computed once.
+ * The tryte representation is rebuilt on each call to {@link #toString()}.
+ */
+public final class TryteHash {
+
+    public static final int TRYTE_LENGTH = 81;
+    public static final int TRYTES_PER_WORD = 13;
+    public static final int WORDS = (TRYTE_LENGTH + TRYTES_PER_WORD - 1) / TRYTES_PER_WORD;
+
+    private static final String ALPHABET = "9ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final byte[] TRYTE_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(TRYTE_VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            TRYTE_VALUES[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    public static final TryteHash NULL_HASH = of(new String(new char[TRYTE_LENGTH]).replace('\0', '9'));
+
+    private final long[] words;
+    private final int hashCode;
+
+    private TryteHash(long[] words) {
+        this.words = words;
+        this.hashCode = mix(words);
+    }
+
+    /**
+     * @throws IllegalArgumentException when trytes is not an 81 trytes string
+     */
+    public static TryteHash of(CharSequence trytes) {
+        long[] words = new long[WORDS];
+        if (trytes == null || !pack(trytes, words)) {
+            throw new IllegalArgumentException("'" + trytes + "' is not a valid hash");
+        }
+        return new TryteHash(words);
+    }
+
+    /**
+     * Same as {@link #of(CharSequence)} without throwing.
+     * @return fallback when trytes is not an 81 trytes string
+     */
+    public static TryteHash of(CharSequence trytes, TryteHash fallback) {
+        long[] words = new long[WORDS];
+        if (trytes == null || !pack(trytes, words)) {
+            return fallback;
+        }
+        return new TryteHash(words);
+    }
+
+    /**
+     * @return true when trytes is an 81 trytes string
+     */
+    public static boolean isValid(CharSequence trytes) {
+        return trytes != null && pack(trytes, new long[WORDS]);
+    }
+
+    /**
+     * @return the packed word at index (0 to {@link #WORDS} - 1)
+     */
+    public long getWord(int index) {
+        return words[index];
+    }
+
+    /**
+     * Copy the packed words into target (of length {@link #WORDS} at least).
+     */
+    public void copyTo(long[] target) {
+        System.arraycopy(words, 0, target, 0, WORDS);
+    }
+
+    /**
+     * @return true when trytes is the tryte representation of this hash
+     */
+    public boolean matches(CharSequence trytes) {
+        if (trytes == null || trytes.length() != TRYTE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < WORDS; i++) {
+            if (packWord(trytes, i) != words[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TryteHash)) return false;
+        TryteHash other = (TryteHash) o;
+        return hashCode == other.hashCode && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * @return the 81 trytes of this hash
+     */
+    @Override
+    public String toString() {
+        return unpack(words);
+    }
+
+    /**
+     * Pack the 81 trytes of trytes into words.
+     * @return false when trytes is not an 81 trytes string
+     */
+    public static boolean pack(CharSequence trytes, long[] words) {
+        if (trytes.length() != TRYTE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < WORDS; i++) {
+            long word = packWord(trytes, i);
+            if (word < 0) {
+                return false;
+            }
+            words[i] = word;
+        }
+        return true;
+    }
+
+    //a word holds at most 27^13 - 1 < 2^62: -1 flags an invalid tryte
+    private static long packWord(CharSequence trytes, int index) {
+        long value = 0;
+        int end = Math.min(TRYTE_LENGTH, (index + 1) * TRYTES_PER_WORD);
+        for (int j = index * TRYTES_PER_WORD; j < end; j++) {
+            char c = trytes.charAt(j);
+            int tryte = c < 128 ? TRYTE_VALUES[c] : -1;
+            if (tryte < 0) {
+                return -1;
+            }
+            value = value * 27 + tryte;
+        }
+        return value;
+    }
+
+    /**
+     * @return the 81 trytes packed in words
+     */
+    public static String unpack(long[] words) {
+        char[] chars = new char[TRYTE_LENGTH];
+        for (int i = 0; i < WORDS; i++) {
+            long value = words[i];
+            int start = i * TRYTES_PER_WORD;
+            int end = Math.min(TRYTE_LENGTH, start + TRYTES_PER_WORD);
+            for (int j = end - 1; j >= start; j--) {
+                chars[j] = ALPHABET.charAt((int) (value % 27));
+                value /= 27;
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Hash of packed words, also used by the off-heap indexes.
+     */
+    public static int mix(long[] words) {
+        long h = 0;
+        for (long word : words) {
+            h = h * 31 + word;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,96 @@
+package org.iota.ict.ixi.serialization.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only window over trytes stored one byte per tryte (e.g. the flattened message of a DataFragment).
+ *
+ * Reads, comparisons and {@link #subSequence(int, int)} do not copy the trytes,
+ * only {@link #toString()} and {@link #copyTo(byte[], int)} do.
+ */
+public final class TryteView implements CharSequence {
+
+    private final byte[] trytes;
+    private final int offset;
+    private final int length;
+
+    private TryteView(byte[] trytes, int offset, int length) {
+        this.trytes = trytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return a view over length trytes of trytes starting at offset, trytes must not be modified afterwards
+     * @throws IndexOutOfBoundsException when the window is not inside trytes
+     */
+    public static TryteView of(byte[] trytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > trytes.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + " for " + trytes.length + " trytes");
+        }
+        return new TryteView(trytes, offset, length);
+    }
+
+    /**
+     * @return a view over the trytes of a String (copied once)
+     */
+    public static TryteView of(String trytes) {
+        byte[] bytes = trytes.getBytes(StandardCharsets.US_ASCII);
+        return new TryteView(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return (char) trytes[offset + index];
+    }
+
+    @Override
+    public TryteView subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new TryteView(trytes, offset + start, end - start);
+    }
+
+    /**
+     * @return true when this view starts with prefix
+     */
+    public boolean startsWith(CharSequence prefix) {
+        if (prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (trytes[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true when this view holds the same trytes as other
+     */
+    public boolean contentEquals(CharSequence other) {
+        return other.length() == length && startsWith(other);
+    }
+
+    /**
+     * Copy the trytes (one byte per tryte) into target at targetOffset.
+     */
+    public void copyTo(byte[] target, int targetOffset) {
+        System.arraycopy(trytes, offset, target, targetOffset, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(trytes, offset, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -19,13 +19,12 @@ public class Utils {
     }
 
     public static boolean isBundleHead(String hash){
-        byte[] hashTrits = Trytes.toTrits(hash);
-        return isFlagSet(hashTrits, Constants.HashFlags.BUNDLE_HEAD_FLAG);
+        return isFlagSet(hash, Constants.HashFlags.BUNDLE_HEAD_FLAG);
     }
 
-    private static boolean isFlagSet(byte[] hashTrits, int position) {
-        assert hashTrits.length == Transaction.Field.TRUNK_HASH.tritLength;
-        return hashTrits[position] == 1;
+    private static boolean isFlagSet(String hash, int position) {
+        assert hash.length() == Transaction.Field.TRUNK_HASH.tryteLength;
+        return FragmentFlags.tritAt(hash, position) == 1;
     }
 
     public static boolean isValidAttributeName(String name) {
@@ -0,0 +1,104 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class CheckpointTest {
+
+    @Test
+    public void writeAndRestore() throws IOException {
+        File file = File.createTempFile("checkpoint", ".db");
+        file.deleteOnExit();
+        assertTrue(file.delete());
+
+        ClassFragment classFragment = new ClassFragment.Builder("MY9CLASS")
+                .addReferencedClasshash(TestUtils.randomHash())
+                .addReferencedClasshash(TestUtils.randomHash())
+                .addAttribute(9, "ATTRIBA")
+                .build();
+        String referenced = TestUtils.randomHash();
+        DataFragment atBoth = new DataFragment.Builder(classFragment).setReference(0, referenced).setReference(1, referenced).build();
+        DataFragment pruned = new DataFragment.Builder(classFragment).setReference(1, referenced).build();
+        ReferencingIndex referencing = new ReferencingIndex();
+        referencing.addAll(referenced, Arrays.asList(atBoth, atBoth, pruned), new int[]{0, 1, 1});
+        ReferencingIndex byClass = new ReferencingIndex();
+        byClass.addAll(classFragment.getClassHash(), Arrays.asList(atBoth, pruned));
+
+        assertFalse(Checkpoint.read(file, new Recorder(Collections.emptyMap())));
+        Checkpoint.write(file, Collections.singletonList(classFragment), referencing.snapshot(), byClass.snapshot());
+
+        //pruned is no longer in the Ict
+        Recorder recorder = new Recorder(Collections.singletonMap(atBoth.getHeadTransactionHash(), atBoth));
+        assertTrue(Checkpoint.read(file, recorder));
+
+        assertEquals(1, recorder.classFragments.size());
+        ClassFragment restoredClass = recorder.classFragments.get(0);
+        assertEquals(classFragment.getClassHash(), restoredClass.getClassHash());
+        assertEquals(classFragment.getHeadTransactionHash(), restoredClass.getHeadTransactionHash());
+        assertEquals(9, restoredClass.getAttributeLength(0));
+        assertEquals(classFragment.getAttributeName(0), restoredClass.getAttributeName(0));
+        assertEquals(classFragment.getClassHashForReference(1), restoredClass.getClassHashForReference(1));
+
+        assertEquals(2, recorder.referencing.get(referenced).size());
+        assertEquals(Arrays.asList(0, 1), recorder.referenceIndexes.get(referenced));
+        assertEquals(Collections.singletonList(atBoth), recorder.instances.get(classFragment.getClassHash()));
+        assertEquals(1, recorder.resolved);
+    }
+
+    private static class Recorder implements Checkpoint.Loader {
+        private final Map<String, DataFragment> tangle;
+        private final List<ClassFragment> classFragments = new ArrayList<>();
+        private final Map<String, List<DataFragment>> referencing = new HashMap<>();
+        private final Map<String, List<Integer>> referenceIndexes = new HashMap<>();
+        private final Map<String, List<DataFragment>> instances = new HashMap<>();
+        private int resolved;
+
+        Recorder(Map<String, DataFragment> tangle) {
+            this.tangle = tangle;
+        }
+
+        @Override
+        public void onClassFragment(ClassFragment classFragment) {
+            classFragments.add(classFragment);
+        }
+
+        @Override
+        public DataFragment resolve(String headHash) {
+            DataFragment fragment = tangle.get(headHash);
+            if (fragment != null) {
+                resolved++;
+            }
+            return fragment;
+        }
+
+        @Override
+        public void onReferencing(String referencedHash, List<DataFragment> fragments, int[] indexes) {
+            referencing.put(referencedHash, fragments);
+            List<Integer> list = new ArrayList<>();
+            for (int i = 0; i < fragments.size(); i++) {
+                list.add(indexes[i]);
+            }
+            Collections.sort(list);
+            referenceIndexes.put(referencedHash, list);
+        }
+
+        @Override
+        public void onClassInstances(String classHash, List<DataFragment> fragments) {
+            instances.put(classHash, fragments);
+        }
+    }
+}
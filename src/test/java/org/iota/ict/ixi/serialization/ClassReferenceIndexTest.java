@@ -0,0 +1,61 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class ClassReferenceIndexTest {
+
+    @Test
+    public void findReferencingClasses() {
+        ClassFragment referenced = new ClassFragment.Builder(TestUtils.random(9)).addAttribute(5, TestUtils.random(10)).build();
+        ClassFragment other = new ClassFragment.Builder(TestUtils.random(9)).addAttribute(5, TestUtils.random(10)).build();
+        ClassFragment atFirst = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClass(referenced).addReferencedClass(other).build();
+        ClassFragment atSecond = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClass(other).addReferencedClass(referenced).build();
+
+        ClassReferenceIndex index = new ClassReferenceIndex();
+        index.add(referenced);
+        index.add(atFirst);
+        index.add(atSecond);
+        //adding a class twice has no effect
+        index.add(atFirst);
+
+        Set<TryteHash> any = index.referencing(referenced.getClassTryteHash(), -1);
+        assertEquals(2, any.size());
+        assertTrue(any.contains(atFirst.getClassTryteHash()));
+        assertTrue(any.contains(atSecond.getClassTryteHash()));
+
+        Set<TryteHash> atIndex = index.referencing(referenced.getClassTryteHash(), 1);
+        assertEquals(1, atIndex.size());
+        assertTrue(atIndex.contains(atSecond.getClassTryteHash()));
+
+        assertEquals(0, index.referencing(referenced.getClassTryteHash(), 2).size());
+        assertEquals(0, index.referencing(atFirst.getClassTryteHash(), -1).size());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void removeEvictedClass() {
+        ClassFragment referenced = new ClassFragment.Builder(TestUtils.random(9)).addAttribute(5, TestUtils.random(10)).build();
+        ClassFragment first = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClass(referenced).build();
+        ClassFragment second = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClass(referenced).build();
+
+        ClassReferenceIndex index = new ClassReferenceIndex();
+        index.add(first);
+        index.add(second);
+        index.remove(first);
+        Set<TryteHash> any = index.referencing(referenced.getClassTryteHash(), -1);
+        assertEquals(1, any.size());
+        assertTrue(any.contains(second.getClassTryteHash()));
+
+        index.remove(second);
+        assertEquals(0, index.referencing(referenced.getClassTryteHash(), -1).size());
+        assertEquals(0, index.size());
+    }
+}
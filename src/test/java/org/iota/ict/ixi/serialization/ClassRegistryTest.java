@@ -0,0 +1,75 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class ClassRegistryTest {
+
+    @Test
+    public void reloadClassesAfterReopen() throws IOException {
+        File file = File.createTempFile("classes", ".db");
+        file.deleteOnExit();
+        assertTrue(file.delete());
+
+        ClassFragment classFragment = new ClassFragment.Builder("MY9CLASS")
+                .addReferencedClasshash(TestUtils.randomHash())
+                .addReferencedClasshash(TestUtils.randomHash())
+                .addAttribute(9, "ATTRIBA")
+                .addAttribute(0, "ATTRIBB")
+                .build();
+        ClassRegistry registry = new ClassRegistry(file);
+        registry.append(classFragment);
+        registry.append(classFragment);
+        assertEquals(1, registry.size());
+        registry.close();
+
+        registry = new ClassRegistry(file);
+        assertEquals(1, registry.size());
+        ClassFragment loaded = registry.load(classFragment.getClassTryteHash());
+        assertNotNull(loaded);
+        assertNull(loaded.getHeadTransaction());
+        assertEquals(classFragment.getHeadTransactionHash(), loaded.getHeadTransactionHash());
+        assertEquals(classFragment.getClassName(), loaded.getClassName());
+        assertEquals(classFragment.getDataSize(), loaded.getDataSize());
+        assertEquals(2, loaded.getRefCount());
+        assertEquals(classFragment.getClassHashForReference(1), loaded.getClassHashForReference(1));
+        assertEquals(9, loaded.getAttributeLength(0));
+        assertEquals(classFragment.getAttributeName(1), loaded.getAttributeName(1));
+        assertEquals(classFragment.getVariableSizeAttributeIndexes(), loaded.getVariableSizeAttributeIndexes());
+        assertNull(registry.load(TryteHash.of(TestUtils.randomHash())));
+        //the class references are indexed when the registry is opened
+        TryteHash referenced = classFragment.getClassTryteHashForReference(1);
+        assertTrue(registry.referencing(referenced, 1).contains(classFragment.getClassTryteHash()));
+        assertEquals(0, registry.referencing(referenced, 0).size());
+        registry.close();
+    }
+
+    @Test
+    public void growBeyondInitialMapping() throws IOException {
+        File file = File.createTempFile("classes", ".db");
+        file.deleteOnExit();
+        assertTrue(file.delete());
+
+        ClassRegistry registry = new ClassRegistry(file);
+        String lastClassHash = null;
+        for (int i = 0; i < 5000; i++) {
+            ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addAttribute(3, "ATTRIBA").build();
+            registry.append(classFragment);
+            lastClassHash = classFragment.getClassHash();
+        }
+        registry.close();
+
+        registry = new ClassRegistry(file);
+        assertEquals(5000, registry.size());
+        assertNotNull(registry.load(TryteHash.of(lastClassHash)));
+        registry.close();
+    }
+}
@@ -0,0 +1,52 @@
+package org.iota.ict.ixi.serialization;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class EvictionTest {
+
+    @Test
+    public void lruEvictsLeastRecentlyUsed() {
+        Eviction<String> eviction = Eviction.create(EvictionPolicy.LRU);
+        eviction.onInsert("A");
+        eviction.onInsert("B");
+        eviction.onInsert("C");
+        eviction.onAccess("A");
+        assertEquals("B", eviction.victim(key -> false));
+        eviction.onRemove("C");
+        assertEquals("A", eviction.victim(key -> false));
+        assertNull(eviction.victim(key -> false));
+        assertEquals(0, eviction.size());
+    }
+
+    @Test
+    public void pinnedKeysAreNeverEvicted() {
+        Eviction<String> eviction = Eviction.create(EvictionPolicy.PIN_LISTENED);
+        eviction.onInsert("PINNED");
+        eviction.onInsert("A");
+        eviction.onInsert("B");
+        assertEquals("A", eviction.victim("PINNED"::equals));
+        assertEquals("B", eviction.victim("PINNED"::equals));
+        assertNull(eviction.victim("PINNED"::equals));
+        assertEquals(1, eviction.size());
+    }
+
+    @Test
+    public void tinyLfuKeepsFrequentKeys() {
+        Eviction<String> eviction = Eviction.create(EvictionPolicy.TINY_LFU);
+        eviction.onInsert("FREQUENT");
+        for (int i = 0; i < 20; i++) {
+            eviction.onAccess("FREQUENT");
+        }
+        //a burst of one-off keys makes FREQUENT the least recently used key
+        for (int i = 0; i < TinyLfuEviction.SAMPLE - 1; i++) {
+            eviction.onInsert("ONCE" + i);
+        }
+        for (int i = 0; i < TinyLfuEviction.SAMPLE - 1; i++) {
+            assertNotEquals("FREQUENT", eviction.victim(key -> false));
+        }
+        assertEquals("FREQUENT", eviction.victim(key -> false));
+    }
+}
@@ -0,0 +1,103 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.model.bundle.BundleBuilder;
+import org.iota.ict.model.transaction.Transaction;
+import org.iota.ict.model.transaction.TransactionBuilder;
+import org.iota.ict.network.gossip.GossipEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class GossipEventQueueTest {
+
+    @Test
+    public void dropOldestWhenFull() throws InterruptedException {
+        GossipEventQueue queue = new GossipEventQueue(2, SheddingPolicy.DROP_OLDEST, 1, event -> true);
+        GossipEvent e0 = bundleHeadEvent();
+        GossipEvent e1 = bundleHeadEvent();
+        GossipEvent e2 = bundleHeadEvent();
+        queue.onReceive(e0);
+        queue.onReceive(e1);
+        queue.onReceive(e2);
+
+        List<GossipEvent> drained = new ArrayList<>();
+        queue.drainTo(drained, 10);
+        assertEquals(2, drained.size());
+        assertSame(e1, drained.get(0));
+        assertSame(e2, drained.get(1));
+        assertEquals(1, queue.getShedCount());
+    }
+
+    @Test
+    public void dropNonListenedWhenFull() throws InterruptedException {
+        GossipEvent listened = bundleHeadEvent();
+        GossipEventQueue queue = new GossipEventQueue(1, SheddingPolicy.DROP_NON_LISTENED_CLASSES, 1, event -> event == listened);
+        GossipEvent e0 = bundleHeadEvent();
+        queue.onReceive(e0);
+        queue.onReceive(bundleHeadEvent());
+        assertEquals(1, queue.getShedCount());
+        queue.onReceive(listened);
+        assertEquals(2, queue.getShedCount());
+
+        List<GossipEvent> drained = new ArrayList<>();
+        queue.drainTo(drained, 10);
+        assertEquals(1, drained.size());
+        assertSame(listened, drained.get(0));
+    }
+
+    @Test
+    public void dropNonListenedKeepsQueuedListened() throws InterruptedException {
+        GossipEvent listened0 = bundleHeadEvent();
+        GossipEvent listened1 = bundleHeadEvent();
+        GossipEventQueue queue = new GossipEventQueue(2, SheddingPolicy.DROP_NON_LISTENED_CLASSES, 1,
+                event -> event == listened0 || event == listened1);
+        GossipEvent e1 = bundleHeadEvent();
+        queue.onReceive(listened0);
+        queue.onReceive(e1);
+        queue.onReceive(listened1);
+        assertEquals(1, queue.getShedCount());
+        //all queued events are listened: the incoming one is dropped
+        queue.onReceive(bundleHeadEvent());
+        assertEquals(2, queue.getShedCount());
+
+        List<GossipEvent> drained = new ArrayList<>();
+        queue.drainTo(drained, 10);
+        assertEquals(2, drained.size());
+        assertSame(listened0, drained.get(0));
+        assertSame(listened1, drained.get(1));
+    }
+
+    @Test
+    public void sampleWhenFull() {
+        GossipEventQueue queue = new GossipEventQueue(1, SheddingPolicy.SAMPLE, 3, event -> true);
+        for (int i = 0; i < 7; i++) {
+            queue.onReceive(bundleHeadEvent());
+        }
+        //6 events overflowed: 2 of them replaced the queued event, 4 were dropped
+        assertEquals(6, queue.getShedCount());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void ignoreNonBundleHeads() {
+        GossipEventQueue queue = new GossipEventQueue(10, SheddingPolicy.BLOCK, 1, event -> true);
+        BundleBuilder bundleBuilder = new BundleBuilder();
+        bundleBuilder.append(new TransactionBuilder());
+        bundleBuilder.append(new TransactionBuilder());
+        Transaction head = bundleBuilder.build().getHead();
+        queue.onReceive(new GossipEvent(head.getTrunk(), false));
+        assertEquals(0, queue.size());
+        queue.onReceive(new GossipEvent(head, false));
+        assertEquals(1, queue.size());
+    }
+
+    private GossipEvent bundleHeadEvent() {
+        BundleBuilder bundleBuilder = new BundleBuilder();
+        bundleBuilder.append(new TransactionBuilder());
+        return new GossipEvent(bundleBuilder.build().getHead(), false);
+    }
+}
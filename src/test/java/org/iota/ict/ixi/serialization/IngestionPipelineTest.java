@@ -0,0 +1,205 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.model.bundle.BundleBuilder;
+import org.iota.ict.model.transaction.Transaction;
+import org.iota.ict.model.transaction.TransactionBuilder;
+import org.iota.ict.network.gossip.GossipEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class IngestionPipelineTest {
+
+    @Test
+    public void appliedInSubmissionOrder() throws InterruptedException {
+        int bundleCount = 200;
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(bundleCount);
+        IngestionPipeline<String> pipeline = new IngestionPipeline<>(new IngestionPipeline.Stages<String>() {
+            @Override
+            public String decode(Transaction bundleHead) {
+                //simulate uneven decoding cost
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return bundleHead.hash;
+            }
+
+            @Override
+            public void apply(List<String> decoded) {
+                applied.addAll(decoded);
+                for (int i = 0; i < decoded.size(); i++) {
+                    done.countDown();
+                }
+            }
+        }, 4);
+
+        pipeline.start();
+        List<String> submitted = new ArrayList<>();
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < bundleCount; i++) {
+            Transaction tx = new TransactionBuilder().build();
+            submitted.add(tx.hash);
+            batch.add(tx);
+            if (batch.size() == 7) {
+                pipeline.submit(batch);
+                batch.clear();
+            }
+        }
+        pipeline.submit(batch);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pipeline.terminate();
+        assertEquals(submitted, applied);
+    }
+
+    @Test
+    public void decodeFailureDoesNotStallPipeline() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        IngestionPipeline<String> pipeline = new IngestionPipeline<>(new IngestionPipeline.Stages<String>() {
+            private boolean first = true;
+
+            @Override
+            public synchronized String decode(Transaction bundleHead) {
+                if (first) {
+                    first = false;
+                    throw new IllegalArgumentException("invalid fragment");
+                }
+                return bundleHead.hash;
+            }
+
+            @Override
+            public void apply(List<String> decoded) {
+                assertEquals(1, decoded.size());
+                done.countDown();
+            }
+        }, 1);
+        pipeline.start();
+        pipeline.submit(Arrays.asList(new TransactionBuilder().build(), new TransactionBuilder().build()));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pipeline.terminate();
+    }
+
+    @Test
+    public void decodeErrorDoesNotKillWorker() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        IngestionPipeline<String> pipeline = new IngestionPipeline<>(new IngestionPipeline.Stages<String>() {
+            private boolean first = true;
+
+            @Override
+            public synchronized String decode(Transaction bundleHead) {
+                if (first) {
+                    first = false;
+                    throw new StackOverflowError();
+                }
+                return bundleHead.hash;
+            }
+
+            @Override
+            public void apply(List<String> decoded) {
+                done.countDown();
+            }
+        }, 1);
+        pipeline.start();
+        pipeline.submit(Arrays.asList(new TransactionBuilder().build(), new TransactionBuilder().build()));
+        //the batch failing with an Error is skipped, the next ones are still decoded
+        pipeline.submit(Collections.singletonList(new TransactionBuilder().build()));
+        pipeline.submit(Collections.singletonList(new TransactionBuilder().build()));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pipeline.terminate();
+    }
+
+    @Test
+    public void stalledPersistStageMakesTheGossipQueueShed() throws InterruptedException {
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IngestionPipeline<String> pipeline = new IngestionPipeline<>(new IngestionPipeline.Stages<String>() {
+            @Override
+            public String decode(Transaction bundleHead) {
+                return bundleHead.hash;
+            }
+
+            @Override
+            public void apply(List<String> decoded) {
+                applying.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 1, 1);
+        pipeline.start();
+        GossipEventQueue queue = new GossipEventQueue(2, SheddingPolicy.DROP_OLDEST, 1, event -> true);
+        //the receive loop of the module
+        Thread receiver = new Thread(() -> {
+            List<GossipEvent> events = new ArrayList<>();
+            try {
+                while (true) {
+                    queue.drainTo(events, 1);
+                    pipeline.submit(Collections.singletonList(events.get(0).getTransaction()));
+                    events.clear();
+                }
+            } catch (InterruptedException e) {
+                //terminated
+            }
+        });
+        receiver.setDaemon(true);
+        receiver.start();
+        try {
+            queue.onReceive(bundleHeadEvent());
+            assertTrue(applying.await(5, TimeUnit.SECONDS));
+            //taken by the receiver, which then blocks on the stalled pipeline
+            queue.onReceive(bundleHeadEvent());
+            for (int i = 0; i < 100 && queue.size() > 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, queue.size());
+            for (int i = 0; i < 5; i++) {
+                queue.onReceive(bundleHeadEvent());
+            }
+            assertEquals(2, queue.size());
+            assertEquals(3, queue.getShedCount());
+        } finally {
+            release.countDown();
+            receiver.interrupt();
+            pipeline.terminate();
+        }
+    }
+
+    @Test
+    public void queueDepthsPerStage() throws InterruptedException {
+        IngestionPipeline<String> pipeline = new IngestionPipeline<>(new IngestionPipeline.Stages<String>() {
+            @Override
+            public String decode(Transaction bundleHead) {
+                return null;
+            }
+
+            @Override
+            public void apply(List<String> decoded) {
+            }
+        }, 3);
+        pipeline.submit(Collections.singletonList(new TransactionBuilder().build()));
+        Map<String, Integer> depths = pipeline.getQueueDepths();
+        assertEquals(4, depths.size());
+        assertEquals(1, (int) depths.get("persist"));
+        assertEquals(1, depths.get("decode-0") + depths.get("decode-1") + depths.get("decode-2"));
+    }
+
+    private static GossipEvent bundleHeadEvent() {
+        BundleBuilder bundleBuilder = new BundleBuilder();
+        bundleBuilder.append(new TransactionBuilder());
+        return new GossipEvent(bundleBuilder.build().getHead(), false);
+    }
+}
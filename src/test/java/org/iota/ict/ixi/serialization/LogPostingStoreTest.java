@@ -0,0 +1,203 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class LogPostingStoreTest {
+
+    private final Map<String, DataFragment> fragmentsByHead = new HashMap<>();
+
+    @Test
+    public void addGetAndRemove() throws IOException {
+        LogPostingStore store = new LogPostingStore(tempFile(), fragmentsByHead::get);
+        List<DataFragment> fragments = fragments(3);
+        String referenced = TestUtils.randomHash();
+        store.addAll(referenced, fragments.subList(0, 2), new int[]{0, 1});
+        store.add(referenced, fragments.get(2), 1);
+        //duplicate posting
+        store.add(referenced, fragments.get(0), 0);
+
+        assertEquals(1, store.size());
+        assertEquals(3, store.postingCount());
+        assertEquals(3, store.get(referenced).size());
+        Set<DataFragment> atIndex = store.get(referenced, 1);
+        assertEquals(2, atIndex.size());
+        assertTrue(atIndex.contains(fragments.get(1)));
+        assertTrue(atIndex.contains(fragments.get(2)));
+        assertEquals(0, store.get(TestUtils.randomHash()).size());
+        assertEquals(0, store.get("NOT9A9HASH").size());
+
+        //postings of fragments gone from the Ict are skipped
+        fragmentsByHead.remove(fragments.get(2).getHeadTransactionHash());
+        assertEquals(1, store.get(referenced, 1).size());
+
+        assertTrue(store.remove(referenced));
+        assertFalse(store.remove(referenced));
+        assertEquals(0, store.get(referenced).size());
+        assertEquals(0, store.size());
+        assertEquals(0, store.postingCount());
+        store.close();
+    }
+
+    @Test
+    public void reopenReplaysTheLog() throws IOException {
+        File file = tempFile();
+        LogPostingStore store = new LogPostingStore(file, fragmentsByHead::get);
+        List<DataFragment> fragments = fragments(2);
+        String kept = TestUtils.randomHash();
+        String removed = TestUtils.randomHash();
+        store.addAll(kept, fragments, new int[]{0, 2});
+        store.add(removed, fragments.get(0));
+        store.remove(removed);
+        long bytes = store.storageBytes();
+        store.close();
+
+        store = new LogPostingStore(file, fragmentsByHead::get);
+        assertEquals(bytes, store.storageBytes());
+        assertEquals(1, store.size());
+        assertEquals(2, store.postingCount());
+        assertEquals(Arrays.asList(kept), store.referencedHashes());
+        assertTrue(store.get(kept, 2).contains(fragments.get(1)));
+        assertEquals(0, store.get(removed).size());
+        store.close();
+    }
+
+    @Test
+    public void sweepRemovesUnresolvableHashes() throws IOException {
+        LogPostingStore store = new LogPostingStore(tempFile(), fragmentsByHead::get);
+        List<DataFragment> fragments = fragments(2);
+        String live = TestUtils.randomHash();
+        String dead = TestUtils.randomHash();
+        store.add(live, fragments.get(0));
+        store.add(dead, fragments.get(1));
+        fragmentsByHead.remove(fragments.get(1).getHeadTransactionHash());
+
+        List<String> liveHashes = new ArrayList<>();
+        List<String> removedHashes = new ArrayList<>();
+        assertEquals(0, store.sweep(0, 10, liveHashes, removedHashes));
+        assertEquals(Arrays.asList(live), liveHashes);
+        assertEquals(Arrays.asList(dead), removedHashes);
+        assertEquals(1, store.collectedPostingCount());
+        assertEquals(1, store.size());
+        store.close();
+    }
+
+    @Test
+    public void sweepDropsUnresolvablePostingsOfLiveHashes() throws IOException {
+        File file = tempFile();
+        LogPostingStore store = new LogPostingStore(file, fragmentsByHead::get);
+        List<DataFragment> fragments = fragments(3);
+        String referenced = TestUtils.randomHash();
+        store.addAll(referenced, fragments, new int[]{0, 0, 1});
+        store.add(referenced, fragments.get(1), 1);
+        fragmentsByHead.remove(fragments.get(1).getHeadTransactionHash());
+
+        List<String> liveHashes = new ArrayList<>();
+        assertEquals(0, store.sweep(0, 10, liveHashes, new ArrayList<>()));
+        assertEquals(Arrays.asList(referenced), liveHashes);
+        assertEquals(2, store.collectedPostingCount());
+        assertEquals(2, store.postingCount());
+
+        //the dropped postings stay dropped once the fragment resolves again
+        fragmentsByHead.put(fragments.get(1).getHeadTransactionHash(), fragments.get(1));
+        assertEquals(2, store.get(referenced).size());
+        store.close();
+
+        store = new LogPostingStore(file, fragmentsByHead::get);
+        assertEquals(2, store.postingCount());
+        assertFalse(store.get(referenced).contains(fragments.get(1)));
+        store.compact();
+        assertEquals(2, store.postingCount());
+        assertEquals(1, store.get(referenced, 1).size());
+        //a dropped posting can be added again
+        store.add(referenced, fragments.get(1), 1);
+        assertEquals(2, store.get(referenced, 1).size());
+        assertEquals(3, store.postingCount());
+        store.close();
+    }
+
+    @Test
+    public void addingPostingsAgainIsIgnored() throws IOException {
+        File file = tempFile();
+        LogPostingStore store = new LogPostingStore(file, fragmentsByHead::get);
+        List<DataFragment> fragments = fragments(2);
+        String referenced = TestUtils.randomHash();
+        store.addAll(referenced, fragments, new int[]{0, 1});
+        long bytes = store.storageBytes();
+        //as a warm start does on each restart
+        store.addAll(referenced, fragments, new int[]{0, 1});
+        store.addAll(referenced, Arrays.asList(fragments.get(0), fragments.get(0)), new int[]{1, 1});
+        assertEquals(3, store.postingCount());
+        assertEquals(2, store.get(referenced, 1).size());
+        assertTrue(store.storageBytes() > bytes);
+        store.close();
+
+        store = new LogPostingStore(file, fragmentsByHead::get);
+        bytes = store.storageBytes();
+        store.addAll(referenced, fragments, new int[]{0, 1});
+        assertEquals(3, store.postingCount());
+        assertEquals(bytes, store.storageBytes());
+        store.close();
+    }
+
+    @Test
+    public void compactionKeepsLivePostings() throws IOException {
+        File file = tempFile();
+        LogPostingStore store = new LogPostingStore(file, fragmentsByHead::get);
+        List<DataFragment> fragments = fragments(2);
+        String kept = TestUtils.randomHash();
+        store.add(kept, fragments.get(0), 0);
+        for (int i = 0; i < 100; i++) {
+            store.add(kept, fragments.get(0), 0);
+            String removed = TestUtils.randomHash();
+            store.add(removed, fragments.get(1));
+            store.remove(removed);
+        }
+        long bytes = store.storageBytes();
+
+        store.compact();
+        assertTrue(store.storageBytes() < bytes / 100);
+        assertEquals(1, store.size());
+        assertEquals(1, store.postingCount());
+        store.add(kept, fragments.get(1), 1);
+        assertEquals(2, store.get(kept).size());
+        store.close();
+
+        store = new LogPostingStore(file, fragmentsByHead::get);
+        assertEquals(1, store.get(kept, 0).size());
+        assertEquals(1, store.get(kept, 1).size());
+        store.close();
+    }
+
+    private List<DataFragment> fragments(int count) {
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        List<DataFragment> ret = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DataFragment fragment = new DataFragment.Builder(classFragment).setReference(0, TestUtils.randomHash()).build();
+            fragmentsByHead.put(fragment.getHeadTransactionHash(), fragment);
+            ret.add(fragment);
+        }
+        return ret;
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("postings", ".log");
+        file.deleteOnExit();
+        assertTrue(file.delete());
+        return file;
+    }
+}
@@ -0,0 +1,50 @@
+package org.iota.ict.ixi.serialization;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class MetricsTest {
+
+    @Test
+    public void snapshotCountersAndGauges() {
+        Metrics metrics = new Metrics();
+        metrics.counter("a").add(3);
+        metrics.counter("a").increment();
+        metrics.gauge("b", () -> 42);
+
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(4L, (long) snapshot.get("a"));
+        assertEquals(42L, (long) snapshot.get("b"));
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        Metrics metrics = new Metrics();
+        Metrics.Histogram histogram = metrics.histogram("latency");
+        for (int i = 0; i < 99; i++) {
+            histogram.record(10);
+        }
+        histogram.record(1000);
+
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(100L, (long) snapshot.get("latency.count"));
+        assertEquals(19L, (long) snapshot.get("latency.mean"));
+        //10 falls in [8,16)
+        assertEquals(15L, (long) snapshot.get("latency.p50"));
+        assertEquals(15L, (long) snapshot.get("latency.p99"));
+        assertEquals(1000L, (long) snapshot.get("latency.max"));
+    }
+
+    @Test
+    public void emptyHistogram() {
+        Metrics metrics = new Metrics();
+        metrics.histogram("latency");
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(0L, (long) snapshot.get("latency.count"));
+        assertEquals(0L, (long) snapshot.get("latency.p99"));
+    }
+}
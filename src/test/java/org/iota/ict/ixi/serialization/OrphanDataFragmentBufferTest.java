@@ -0,0 +1,59 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.model.transaction.Transaction;
+import org.iota.ict.model.transaction.TransactionBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class OrphanDataFragmentBufferTest {
+
+    @Test
+    public void replayParkedFragments() {
+        OrphanDataFragmentBuffer buffer = new OrphanDataFragmentBuffer(10, 60000);
+        String classHash = TestUtils.randomHash();
+        Transaction t0 = new TransactionBuilder().build();
+        Transaction t1 = new TransactionBuilder().build();
+        buffer.park(classHash, t0);
+        buffer.park(TestUtils.randomHash(), new TransactionBuilder().build());
+        buffer.park(classHash, t1);
+
+        List<Transaction> replayed = buffer.replay(classHash);
+        assertEquals(2, replayed.size());
+        assertEquals(t0.hash, replayed.get(0).hash);
+        assertEquals(t1.hash, replayed.get(1).hash);
+        assertEquals(0, buffer.replay(classHash).size());
+
+        Map<String, Long> statistics = buffer.getStatistics();
+        assertEquals(1L, (long) statistics.get("size"));
+        assertEquals(3L, (long) statistics.get("parked"));
+        assertEquals(2L, (long) statistics.get("replayed"));
+    }
+
+    @Test
+    public void evictOldestWhenFull() {
+        OrphanDataFragmentBuffer buffer = new OrphanDataFragmentBuffer(2, 60000);
+        String first = TestUtils.randomHash();
+        buffer.park(first, new TransactionBuilder().build());
+        buffer.park(TestUtils.randomHash(), new TransactionBuilder().build());
+        buffer.park(TestUtils.randomHash(), new TransactionBuilder().build());
+        assertEquals(0, buffer.replay(first).size());
+        assertEquals(1L, (long) buffer.getStatistics().get("evicted"));
+        assertEquals(2L, (long) buffer.getStatistics().get("size"));
+    }
+
+    @Test
+    public void expireAfterTimeToLive() {
+        OrphanDataFragmentBuffer buffer = new OrphanDataFragmentBuffer(10, 10);
+        String classHash = TestUtils.randomHash();
+        buffer.park(classHash, new TransactionBuilder().build());
+        TestUtils.safeSleep(50);
+        assertEquals(0, buffer.replay(classHash).size());
+        assertEquals(1L, (long) buffer.getStatistics().get("expired"));
+    }
+}
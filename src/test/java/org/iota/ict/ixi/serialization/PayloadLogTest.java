@@ -0,0 +1,92 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class PayloadLogTest {
+
+    @Test
+    public void appendAndReopen() throws IOException {
+        File directory = Files.createTempDirectory("payloads").toFile();
+        directory.deleteOnExit();
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9))
+                .addAttribute(0, TestUtils.random(10))
+                .addReferencedClasshash(TestUtils.randomHash())
+                .build();
+        String ref0 = TestUtils.randomHash();
+        DataFragment dataFragment = new DataFragment.Builder(classFragment)
+                .setAttribute(0, "MY9DATA")
+                .setReference(0, ref0)
+                .build();
+
+        PayloadLog payloadLog = new PayloadLog(directory, 1 << 16, 0);
+        assertTrue(payloadLog.append(dataFragment));
+        assertFalse(payloadLog.append(dataFragment));
+        assertEquals(1, payloadLog.size());
+        assertEquals(dataFragment.getMessageTrytes(), payloadLog.loadMessage(dataFragment.getHeadTransactionHash()));
+        assertEquals(ref0, payloadLog.loadReference(dataFragment.getHeadTransactionHash(), 0));
+        assertNull(payloadLog.loadReference(dataFragment.getHeadTransactionHash(), 1));
+        assertNull(payloadLog.loadMessage(TestUtils.randomHash()));
+        payloadLog.close();
+
+        payloadLog = new PayloadLog(directory, 1 << 16, 0);
+        assertEquals(1, payloadLog.size());
+        assertEquals(classFragment.getClassHash(), payloadLog.loadClassHash(dataFragment.getHeadTransactionHash()));
+        DataFragment restored = new DataFragment(dataFragment.getHeadTransactionHash(), classFragment, payloadLog);
+        assertEquals("MY9DATA", restored.getAttributeAsTryte(0));
+        assertEquals(ref0, restored.getReference(0));
+        payloadLog.close();
+    }
+
+    @Test
+    public void partialChainsAreNotStored() throws IOException {
+        File directory = Files.createTempDirectory("payloads").toFile();
+        directory.deleteOnExit();
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9))
+                .addAttribute(3000, TestUtils.random(10))
+                .build();
+        DataFragment dataFragment = new DataFragment.Builder(classFragment).setAttribute(0, TestUtils.random(3000)).build();
+        //the rest of the chain left the Ict before the message was read
+        dataFragment.getHeadTransaction().setTrunk(null);
+        assertNull(dataFragment.getCompleteMessageTrytes());
+
+        PayloadLog payloadLog = new PayloadLog(directory, 1 << 16, 0);
+        assertFalse(payloadLog.append(dataFragment));
+        assertEquals(0, payloadLog.size());
+        payloadLog.close();
+    }
+
+    @Test
+    public void oldestSegmentsAreDropped() throws IOException {
+        File directory = Files.createTempDirectory("payloads").toFile();
+        directory.deleteOnExit();
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9))
+                .addAttribute(1000, TestUtils.random(10))
+                .build();
+        int segmentBytes = 1 << 12;
+        PayloadLog payloadLog = new PayloadLog(directory, segmentBytes, 3 * segmentBytes);
+        List<DataFragment> dataFragments = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            DataFragment dataFragment = new DataFragment.Builder(classFragment).setAttribute(0, TestUtils.random(1000)).build();
+            dataFragments.add(dataFragment);
+            assertTrue(payloadLog.append(dataFragment));
+        }
+        assertEquals(3, payloadLog.segmentCount());
+        assertTrue(payloadLog.size() < 40);
+        assertNull(payloadLog.loadMessage(dataFragments.get(0).getHeadTransactionHash()));
+        DataFragment last = dataFragments.get(39);
+        assertEquals(last.getAttributeAsTryte(0), payloadLog.loadMessage(last.getHeadTransactionHash()));
+        payloadLog.close();
+    }
+}
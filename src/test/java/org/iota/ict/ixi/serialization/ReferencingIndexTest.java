@@ -0,0 +1,192 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.iota.ict.ixi.serialization.model.PayloadStore;
+import org.iota.ict.ixi.serialization.util.TryteHash;
+import org.iota.ict.model.transaction.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class ReferencingIndexTest {
+
+    @Test
+    public void addGetAndRemove() {
+        ReferencingIndex index = new ReferencingIndex(16);
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        List<String> referenced = new ArrayList<>();
+        List<DataFragment> fragments = new ArrayList<>();
+        //enough hashes and fragments to grow the table and the postings
+        for (int i = 0; i < 200; i++) {
+            referenced.add(TestUtils.randomHash());
+            fragments.add(new DataFragment.Builder(classFragment).setReference(0, TestUtils.randomHash()).build());
+        }
+        for (int i = 0; i < 200; i++) {
+            index.addAll(referenced.get(i), Arrays.asList(fragments.get(i), fragments.get((i + 1) % 200)));
+        }
+        //duplicate edge
+        index.add(referenced.get(0), fragments.get(0));
+
+        assertEquals(200, index.size());
+        assertEquals(400, index.postingCount());
+        Set<DataFragment> set = index.get(referenced.get(7));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(fragments.get(7)));
+        assertTrue(set.contains(fragments.get(8)));
+        assertEquals(2, index.get(TryteHash.of(referenced.get(7))).size());
+        assertEquals(0, index.get(TestUtils.randomHash()).size());
+        assertEquals(0, index.get("NOT9A9HASH").size());
+
+        assertTrue(index.remove(referenced.get(7)));
+        assertFalse(index.remove(referenced.get(7)));
+        assertEquals(0, index.get(referenced.get(7)).size());
+        assertEquals(199, index.size());
+        assertEquals(199, index.referencedHashes().size());
+        assertTrue(index.get(referenced.get(8)).contains(fragments.get(8)));
+
+        //freed postings and slots are reused
+        index.add(referenced.get(7), fragments.get(3));
+        assertEquals(1, index.get(referenced.get(7)).size());
+        assertEquals(400 - 2 + 1, index.postingCount());
+    }
+
+    @Test
+    public void sweepResumesFromCursor() {
+        ReferencingIndex index = new ReferencingIndex(64);
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        DataFragment fragment = new DataFragment.Builder(classFragment).setReference(0, TestUtils.randomHash()).build();
+        Transaction head = fragment.getHeadTransaction();
+        Set<String> referenced = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            String hash = TestUtils.randomHash();
+            referenced.add(hash);
+            index.add(hash, fragment);
+        }
+
+        Set<String> live = new HashSet<>();
+        int cursor = 0;
+        int runs = 0;
+        do {
+            cursor = index.sweep(cursor, 10, live, new ArrayList<>());
+            runs++;
+        } while (cursor != 0);
+        assertTrue(runs > 1);
+        assertEquals(referenced, live);
+        assertEquals(40, index.size());
+        assertEquals(0, index.collectedPostingCount());
+        assertNotNull(head);
+    }
+
+    @Test
+    public void sweepBudgetCountsKeys() {
+        ReferencingIndex index = new ReferencingIndex(1024);
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        DataFragment fragment = new DataFragment.Builder(classFragment).setReference(0, TestUtils.randomHash()).build();
+        Set<String> referenced = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            String hash = TestUtils.randomHash();
+            referenced.add(hash);
+            index.add(hash, fragment);
+        }
+
+        //the empty slots of a sparse table do not use the budget: a single run checks every key
+        Set<String> live = new HashSet<>();
+        index.sweep(0, 5, live, new ArrayList<>());
+        assertEquals(referenced, live);
+        assertNotNull(fragment.getHeadTransaction());
+    }
+
+    @Test
+    public void sweepUnlinksCollectedFragments() {
+        ReferencingIndex index = new ReferencingIndex(16);
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        DataFragment kept = new DataFragment.Builder(classFragment).setReference(0, TestUtils.randomHash()).build();
+        Transaction keptHead = kept.getHeadTransaction();
+        DataFragment built = new DataFragment.Builder(classFragment).setReference(0, TestUtils.randomHash()).build();
+        String message = built.getMessageTrytes();
+        //restored from a payload store: its head transaction is gone, as if collected
+        DataFragment collected = new DataFragment(built.getHeadTransactionHash(), classFragment, new PayloadStore() {
+            @Override
+            public String loadMessage(String headTransactionHash) {
+                return message;
+            }
+
+            @Override
+            public String loadReference(String headTransactionHash, int index) {
+                return null;
+            }
+        });
+        assertNull(collected.getHeadTransaction());
+        String shared = TestUtils.randomHash();
+        String single = TestUtils.randomHash();
+        index.addAll(shared, Arrays.asList(kept, collected));
+        index.add(single, collected);
+
+        List<String> live = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        assertEquals(0, index.sweep(0, Integer.MAX_VALUE, live, removed));
+        assertEquals(Arrays.asList(shared), live);
+        assertEquals(Arrays.asList(single), removed);
+        assertEquals(1, index.size());
+        assertEquals(1, index.postingCount());
+        assertEquals(2, index.collectedPostingCount());
+        assertTrue(index.get(shared).contains(kept));
+        assertEquals(0, index.get(single).size());
+        assertNotNull(keptHead);
+    }
+
+    @Test
+    public void getAtReferenceIndex() {
+        ReferencingIndex index = new ReferencingIndex(16);
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9))
+                .addReferencedClasshash(TestUtils.randomHash()).addReferencedClasshash(TestUtils.randomHash()).build();
+        String referenced = TestUtils.randomHash();
+        DataFragment atFirst = new DataFragment.Builder(classFragment).setReference(0, referenced).build();
+        DataFragment atBoth = new DataFragment.Builder(classFragment).setReference(0, referenced).setReference(1, referenced).build();
+        index.addAll(referenced, Arrays.asList(atFirst, atBoth, atBoth), new int[]{0, 0, 1});
+        //same fragment at the same index
+        index.add(referenced, atBoth, 1);
+
+        assertEquals(3, index.postingCount());
+        assertEquals(2, index.get(referenced).size());
+        assertEquals(2, index.get(referenced, 0).size());
+        Set<DataFragment> atSecond = index.get(TryteHash.of(referenced), 1);
+        assertEquals(1, atSecond.size());
+        assertTrue(atSecond.contains(atBoth));
+        assertEquals(0, index.get(referenced, 2).size());
+    }
+
+    @Test
+    public void readsRacingWithWritersSeeConsistentPostings() throws InterruptedException {
+        ReferencingIndex index = new ReferencingIndex(16);
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        String referenced = TestUtils.randomHash();
+        List<DataFragment> fragments = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            fragments.add(new DataFragment.Builder(classFragment).setReference(0, TestUtils.randomHash()).build());
+        }
+        index.addAll(referenced, fragments);
+
+        //the writer grows the table and the postings while the lookups run
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                index.add(TestUtils.randomHash(), fragments.get(i % 3));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            assertEquals(new HashSet<>(fragments), index.get(referenced));
+        }
+        writer.join();
+        assertEquals(2001, index.size());
+    }
+}
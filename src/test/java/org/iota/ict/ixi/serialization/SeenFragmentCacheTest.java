@@ -0,0 +1,63 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.TestUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class SeenFragmentCacheTest {
+
+    @Test
+    public void detectDuplicates() {
+        SeenFragmentCache cache = new SeenFragmentCache(100);
+        String hash = TestUtils.randomHash();
+        assertFalse(cache.markSeen(hash));
+        assertTrue(cache.markSeen(hash));
+        assertFalse(cache.markSeen(TestUtils.randomHash()));
+        assertEquals(1, cache.getDuplicateCount());
+    }
+
+    @Test
+    public void isSeenDoesNotRecord() {
+        SeenFragmentCache cache = new SeenFragmentCache(100);
+        String hash = TestUtils.randomHash();
+        assertFalse(cache.isSeen(hash));
+        assertFalse(cache.isSeen(hash));
+        cache.markSeen(hash);
+        assertTrue(cache.isSeen(hash));
+        assertEquals(1, cache.getDuplicateCount());
+    }
+
+    @Test
+    public void forgetLeastRecentlySeen() {
+        SeenFragmentCache cache = new SeenFragmentCache(2);
+        String h0 = TestUtils.randomHash();
+        String h1 = TestUtils.randomHash();
+        cache.markSeen(h0);
+        cache.markSeen(h1);
+        assertTrue(cache.markSeen(h0));
+        //h1 is the least recently seen
+        cache.markSeen(TestUtils.randomHash());
+        assertFalse(cache.markSeen(h1));
+    }
+
+    @Test
+    public void rememberAcrossBloomRebuilds() {
+        SeenFragmentCache cache = new SeenFragmentCache(10);
+        String hash = TestUtils.randomHash();
+        cache.markSeen(hash);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(cache.markSeen(hash));
+            cache.markSeen(TestUtils.randomHash());
+        }
+    }
+
+    @Test
+    public void disabled() {
+        SeenFragmentCache cache = new SeenFragmentCache(0);
+        String hash = TestUtils.randomHash();
+        assertFalse(cache.markSeen(hash));
+        assertFalse(cache.markSeen(hash));
+    }
+}
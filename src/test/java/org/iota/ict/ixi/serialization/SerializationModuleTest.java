@@ -11,7 +11,11 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -144,4 +148,74 @@ public class SerializationModuleTest {
 
 
 
+
+    @Test
+    public void cappedPersistenceEvicts() throws IOException {
+        File file = File.createTempFile("classes", ".db");
+        file.deleteOnExit();
+        assertTrue(file.delete());
+        SerializationModule module = new SerializationModule(Mockito.mock(Ixi.class));
+        try {
+            module.persistence.open(new ClassRegistry(file));
+            module.persistence.limit(2, 3, EvictionPolicy.LRU);
+            ClassFragment first = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+            ClassFragment second = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+            ClassFragment third = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+            module.persistence.persist(first);
+            module.persistence.persist(second);
+            assertNotNull(module.persistence.search(first.getClassTryteHash()));
+            module.persistence.persist(third);
+            assertEquals(Long.valueOf(1), module.getMetrics().snapshot().get("eviction.classFragments"));
+            assertNotNull(module.persistence.search(first.getClassTryteHash()));
+            assertNotNull(module.persistence.search(third.getClassTryteHash()));
+            //reloaded from the registry, evicting the least recently used
+            assertNotNull(module.persistence.search(second.getClassTryteHash()));
+            assertEquals(Long.valueOf(2), module.getMetrics().snapshot().get("eviction.classFragments"));
+
+            String[] referenced = new String[4];
+            for (int i = 0; i < referenced.length; i++) {
+                referenced[i] = TestUtils.randomHash();
+                module.persistence.persist(new DataFragment.Builder(first).setReference(0, referenced[i]).build());
+            }
+            assertEquals(0, module.findDataFragmentReferencing(referenced[0], null).size());
+            assertEquals(1, module.findDataFragmentReferencing(referenced[3], null).size());
+            assertEquals(Long.valueOf(1), module.getMetrics().snapshot().get("eviction.referencedHashes"));
+        } finally {
+            module.persistence.terminate();
+        }
+    }
+
+    @Test
+    public void classCapacityIgnoredWithoutRegistry(){
+        SerializationModule module = new SerializationModule(Mockito.mock(Ixi.class));
+        try {
+            module.persistence.limit(1, 0, EvictionPolicy.LRU);
+            ClassFragment first = new ClassFragment.Builder(TestUtils.random(9)).build();
+            ClassFragment second = new ClassFragment.Builder(TestUtils.random(9)).build();
+            module.persistence.persist(first);
+            module.persistence.persist(second);
+            assertNotNull(module.persistence.search(first.getClassTryteHash()));
+            assertNotNull(module.persistence.search(second.getClassTryteHash()));
+            assertEquals(Long.valueOf(0), module.getMetrics().snapshot().get("eviction.classFragments"));
+        } finally {
+            module.persistence.terminate();
+        }
+    }
+
+    @Test
+    public void findDataFragmentForClassHashUsesIndex(){
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        DataFragment first = new DataFragment.Builder(classFragment).setReference(0, TestUtils.randomHash()).build();
+        DataFragment second = new DataFragment.Builder(classFragment).build();
+        serializationModule.persistence.persist(classFragment);
+        serializationModule.persistence.persist(first);
+        serializationModule.persistence.persist(Collections.singletonList(second));
+
+        Set<DataFragment> found = serializationModule.findDataFragmentForClassHash(classFragment.getClassHash());
+        assertEquals(2, found.size());
+        assertTrue(found.contains(first));
+        assertTrue(found.contains(second));
+        assertEquals(0, serializationModule.findDataFragmentForClassHash(TestUtils.randomHash()).size());
+        assertEquals(0, serializationModule.findDataFragmentForClassHash(null).size());
+    }
 }
@@ -0,0 +1,44 @@
+package org.iota.ict.ixi.serialization;
+
+import org.iota.ict.ixi.Ixi;
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class WarmStartTest {
+
+    @Test
+    public void loadStoredFragments() throws InterruptedException {
+        SerializationModule serializationModule = new SerializationModule(Mockito.mock(Ixi.class));
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        String referenced = TestUtils.randomHash();
+        DataFragment dataFragment = new DataFragment.Builder(classFragment).setReference(0, referenced).build();
+        ClassFragment unknownClass = new ClassFragment.Builder(TestUtils.random(9)).addReferencedClasshash(TestUtils.randomHash()).build();
+        String otherReferenced = TestUtils.randomHash();
+        DataFragment orphan = new DataFragment.Builder(unknownClass).setReference(0, otherReferenced).build();
+
+        OrphanDataFragmentBuffer orphanDataFragments = new OrphanDataFragmentBuffer(10, 60000);
+        SeenFragmentCache seenFragments = new SeenFragmentCache(100);
+        WarmStart warmStart = new WarmStart(null, serializationModule.persistence,
+                orphanDataFragments, seenFragments, new Metrics(), 2, null);
+        warmStart.load(Collections.singletonList(classFragment.getHeadTransaction()),
+                Arrays.asList(dataFragment.getHeadTransaction(), orphan.getHeadTransaction()));
+
+        assertTrue(warmStart.isComplete());
+        assertNotNull(serializationModule.loadClassFragmentForClassHash(classFragment.getClassHash()));
+        assertEquals(1, serializationModule.findDataFragmentReferencing(referenced, null).size());
+        assertEquals(0, serializationModule.findDataFragmentReferencing(otherReferenced, null).size());
+        //the orphan is parked, not marked seen, until its class is known
+        assertTrue(seenFragments.isSeen(dataFragment.getHeadTransactionHash()));
+        assertFalse(seenFragments.isSeen(orphan.getHeadTransactionHash()));
+        assertEquals(1, orphanDataFragments.replay(unknownClass.getClassHash()).size());
+    }
+}
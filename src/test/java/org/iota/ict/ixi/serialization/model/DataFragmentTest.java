@@ -1,12 +1,17 @@
 package org.iota.ict.ixi.serialization.model;
 
 import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.util.TryteHash;
 import org.iota.ict.utils.Trytes;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.iota.ict.utils.Trytes.NULL_HASH;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SuppressWarnings("WeakerAccess")
@@ -201,4 +206,121 @@ public class DataFragmentTest {
         assertEquals("A9999",dataFragment.getAttributeAsTryte(3));
         assertEquals(randomData2,dataFragment.getAttributeAsTryte(4));
     }
+
+    @Test
+    public void restoredFromPayloadStore() {
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9))
+                .addAttribute(7, TestUtils.random(10)).addAttribute(0, TestUtils.random(10))
+                .addReferencedClasshash(TestUtils.random(81))
+                .build();
+        String ref0 = TestUtils.randomHash();
+        DataFragment dataFragment = new DataFragment.Builder(classFragment)
+                .setAttribute(0,"MY9DATA")
+                .setAttribute(1,"ABCDEFGHIJKLMNOPQRSTUVWXYZ")
+                .setReference(0, ref0)
+                .build();
+        String message = dataFragment.getMessageTrytes();
+        AtomicInteger loads = new AtomicInteger();
+        PayloadStore payloadStore = new PayloadStore() {
+            @Override
+            public String loadMessage(String headTransactionHash) {
+                loads.incrementAndGet();
+                return headTransactionHash.equals(dataFragment.getHeadTransactionHash()) ? message : null;
+            }
+
+            @Override
+            public String loadReference(String headTransactionHash, int index) {
+                return headTransactionHash.equals(dataFragment.getHeadTransactionHash()) && index == 0 ? ref0 : null;
+            }
+        };
+
+        DataFragment restored = new DataFragment(dataFragment.getHeadTransactionHash(), classFragment, payloadStore);
+        //the payload checked by the constructor is the one the attributes are located in
+        assertEquals(1, loads.get());
+        assertEquals(dataFragment, restored);
+        assertEquals("MY9DATA",restored.getAttributeAsTryte(0));
+        assertEquals("ABCDEFGHIJKLMNOPQRSTUVWXYZ",restored.getAttributeAsTryte(1));
+        assertEquals(ref0, restored.getReference(0));
+        assertEquals(NULL_HASH, restored.getReference(1));
+        assertEquals(classFragment.getClassHash(), restored.getClassHash());
+
+        assertThrows(IllegalArgumentException.class, () -> new DataFragment(TestUtils.randomHash(), classFragment, payloadStore));
+    }
+
+    @Test
+    public void unavailableReferenceTryteHash() {
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9))
+                .addAttribute(7, TestUtils.random(10))
+                .addReferencedClasshash(TestUtils.random(81))
+                .build();
+        String ref0 = TestUtils.randomHash();
+        DataFragment dataFragment = new DataFragment.Builder(classFragment).setReference(0, ref0).build();
+        assertEquals(TryteHash.of(ref0), dataFragment.getReferenceTryteHash(0));
+        //past the transactions of the fragment
+        assertEquals(TryteHash.NULL_HASH, dataFragment.getReferenceTryteHash(5));
+
+        String message = dataFragment.getMessageTrytes();
+        PayloadStore payloadStore = new PayloadStore() {
+            @Override
+            public String loadMessage(String headTransactionHash) {
+                return message;
+            }
+
+            @Override
+            public String loadReference(String headTransactionHash, int index) {
+                return index == 0 ? "NOT9A9HASH" : null;
+            }
+        };
+        DataFragment restored = new DataFragment(dataFragment.getHeadTransactionHash(), classFragment, payloadStore);
+        assertEquals(TryteHash.NULL_HASH, restored.getReferenceTryteHash(0));
+        assertEquals(TryteHash.NULL_HASH, restored.getReferenceTryteHash(1));
+    }
+
+    @Test
+    public void attributesAreReadFromTheFlattenedMessage() {
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9))
+                .addAttribute(3000, TestUtils.random(10)).addAttribute(0, TestUtils.random(10))
+                .build();
+        String large = TestUtils.random(3000);
+        DataFragment dataFragment = new DataFragment.Builder(classFragment)
+                .setAttribute(0, large)
+                .setAttribute(1, "MY9DATA")
+                .build();
+        assertTrue(dataFragment.getHeadTransaction().getTrunk() != null);
+        assertEquals(3000 + 6 + 7, dataFragment.getMessageTrytes().length());
+
+        //the message was flattened and cached by the first read: the trunk chain is no longer walked
+        dataFragment.getHeadTransaction().setTrunk(null);
+        assertEquals(large, dataFragment.getAttributeAsTryte(0));
+        assertEquals("MY9DATA", dataFragment.getAttributeAsTryte(1));
+        assertTrue(dataFragment.getAttributeView(0).contentEquals(large));
+        assertTrue(dataFragment.getAttributeView(1).startsWith("MY9"));
+    }
+
+    @Test
+    public void typedAttributes() {
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9))
+                .addAttribute(13, TestUtils.random(10))
+                .addAttribute(0, TestUtils.random(10))
+                .addAttribute(40, TestUtils.random(10))
+                .addAttribute(0, TestUtils.random(10))
+                .build();
+        byte[] bytes = new byte[]{0, 1, -1, 127, -128};
+        DataFragment dataFragment = new DataFragment.Builder(classFragment)
+                .setAttributeAsLong(0, -123456789012L)
+                .setAttributeAsLong(1, 42)
+                .setAttributeAsText(2, "Hello IOTA")
+                .setAttributeAsBytes(3, bytes)
+                .build();
+        assertEquals(-123456789012L, dataFragment.getAttributeAsLong(0));
+        assertEquals(42, dataFragment.getAttributeAsInt(1));
+        assertEquals(2, dataFragment.getAttributeAsTryte(1).length());
+        assertEquals("Hello IOTA", dataFragment.getAttributeAsText(2));
+        assertArrayEquals(bytes, dataFragment.getAttributeAsBytes(3));
+
+        byte[] trits = new byte[39];
+        assertEquals(39, dataFragment.getAttributeAsTrits(0, trits));
+        assertArrayEquals(Trytes.toTrits(dataFragment.getAttributeAsTryte(0)), trits);
+        assertThrows(IllegalArgumentException.class, () -> new DataFragment.Builder(classFragment).setAttributeAsLong(0, Long.MAX_VALUE));
+    }
 }
@@ -0,0 +1,48 @@
+package org.iota.ict.ixi.serialization.model;
+
+import org.iota.ict.ixi.TestUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class MessageCacheTest {
+
+    @Test
+    public void boundedByBytes() {
+        MessageCache cache = new MessageCache(100);
+        String h0 = TestUtils.randomHash();
+        String h1 = TestUtils.randomHash();
+        String h2 = TestUtils.randomHash();
+        cache.put(h0, new byte[40]);
+        cache.put(h1, new byte[40]);
+        assertNotNull(cache.get(h0));
+        //h1 is the least recently read
+        cache.put(h2, new byte[40]);
+        assertNull(cache.get(h1));
+        assertNotNull(cache.get(h0));
+        assertNotNull(cache.get(h2));
+        assertEquals(80, cache.bytes());
+
+        //larger than the whole cache
+        cache.put(TestUtils.randomHash(), new byte[101]);
+        assertEquals(2, cache.size());
+
+        cache.resize(0);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    public void evictAllKeepsTheCapacity() {
+        MessageCache cache = new MessageCache(100);
+        cache.put(TestUtils.randomHash(), new byte[40]);
+        cache.put(TestUtils.randomHash(), new byte[40]);
+        cache.evictAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+
+        cache.put(TestUtils.randomHash(), new byte[40]);
+        assertEquals(40, cache.bytes());
+    }
+}
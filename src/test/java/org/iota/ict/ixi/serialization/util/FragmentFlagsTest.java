@@ -0,0 +1,33 @@
+package org.iota.ict.ixi.serialization.util;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.utils.Trytes;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SuppressWarnings("WeakerAccess")
+public class FragmentFlagsTest {
+
+    @Test
+    public void matchesTritConversion() {
+        for (int i = 0; i < 1000; i++) {
+            String tag = TestUtils.random(27);
+            byte[] trits = Trytes.toTrits(tag);
+            int flags = FragmentFlags.ofTag(tag);
+            assertEquals(trits[3] == 1, FragmentFlags.isClassTail(flags));
+            assertEquals(trits[4] == 1, FragmentFlags.isClassHead(flags));
+            assertEquals(trits[5] == 1, FragmentFlags.isDataTail(flags));
+            assertEquals(trits[6] == 1, FragmentFlags.isDataHead(flags));
+        }
+    }
+
+    @Test
+    public void tritAt() {
+        String hash = TestUtils.randomHash();
+        byte[] trits = Trytes.toTrits(hash);
+        for (int i = 0; i < trits.length; i++) {
+            assertEquals(trits[i], FragmentFlags.tritAt(hash, i));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.iota.ict.ixi.serialization.util;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.ixi.serialization.model.ClassFragment;
+import org.iota.ict.ixi.serialization.model.DataFragment;
+import org.iota.ict.model.bundle.Bundle;
+import org.iota.ict.model.bundle.BundleBuilder;
+import org.iota.ict.model.transaction.Transaction;
+import org.iota.ict.model.transaction.TransactionBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class FragmentScannerTest {
+
+    @Test
+    public void scanMultiFragmentBundle() {
+        ClassFragment.Builder classBuilder = new ClassFragment.Builder(TestUtils.random(9)).addAttribute(5, TestUtils.random(10));
+        ClassFragment classFragment = classBuilder.build();
+        BundleBuilder bundleBuilder = new BundleBuilder();
+        bundleBuilder.append(new TransactionBuilder()); //bundle tail
+        bundleBuilder.append(prepareDataFragment(classFragment));
+        bundleBuilder.append(new ClassFragment.Builder(TestUtils.random(9)).prepare().fromTailToHead());
+        bundleBuilder.append(prepareDataFragment(classFragment));
+        bundleBuilder.append(new TransactionBuilder()); //bundle head
+        Bundle bundle = bundleBuilder.build();
+
+        Recorder recorder = new Recorder();
+        FragmentScanner.scan(bundle.getHead(), recorder);
+
+        List<Transaction> txs = new ArrayList<>();
+        for (Transaction t = bundle.getHead(); t != null; t = t.getTrunk()) {
+            txs.add(t);
+        }
+        assertEquals(1, recorder.classFragments.size());
+        assertEquals(2, recorder.dataFragments.size());
+        //first data fragment is closest to the bundle head
+        assertEquals(txs.get(1).hash, recorder.dataFragments.get(0)[0].hash);
+        assertEquals(txs.get(2).hash, recorder.dataFragments.get(0)[1].hash);
+        assertEquals(txs.get(3).hash, recorder.classFragments.get(0)[0].hash);
+        assertEquals(txs.get(3).hash, recorder.classFragments.get(0)[1].hash);
+        assertEquals(txs.get(4).hash, recorder.dataFragments.get(1)[0].hash);
+        assertEquals(txs.get(5).hash, recorder.dataFragments.get(1)[1].hash);
+    }
+
+    @Test
+    public void ignoreFragmentWithoutTail() {
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addAttribute(5, TestUtils.random(10)).build();
+        List<TransactionBuilder> dataTransactions = prepareDataFragment(classFragment);
+
+        BundleBuilder bundleBuilder = new BundleBuilder();
+        bundleBuilder.append(new TransactionBuilder()); //bundle tail
+        //only the head of the data fragment is in the bundle
+        bundleBuilder.append(dataTransactions.get(dataTransactions.size() - 1));
+        Bundle bundle = bundleBuilder.build();
+
+        Recorder recorder = new Recorder();
+        FragmentScanner.scan(bundle.getHead(), recorder);
+        assertEquals(0, recorder.dataFragments.size());
+        assertEquals(0, recorder.classFragments.size());
+    }
+
+    @Test
+    public void screenBundles() {
+        BundleBuilder bundleBuilder = new BundleBuilder();
+        bundleBuilder.append(new TransactionBuilder());
+        bundleBuilder.append(new TransactionBuilder());
+        bundleBuilder.append(new TransactionBuilder());
+        assertEquals(3, FragmentScanner.screen(bundleBuilder.build().getHead()));
+
+        ClassFragment classFragment = new ClassFragment.Builder(TestUtils.random(9)).addAttribute(5, TestUtils.random(10)).build();
+        bundleBuilder = new BundleBuilder();
+        bundleBuilder.append(new TransactionBuilder());
+        bundleBuilder.append(prepareDataFragment(classFragment));
+        bundleBuilder.append(new TransactionBuilder());
+        assertEquals(0, FragmentScanner.screen(bundleBuilder.build().getHead()));
+    }
+
+    private List<TransactionBuilder> prepareDataFragment(ClassFragment classFragment) {
+        return new DataFragment.Builder(classFragment)
+                .setReference(0, TestUtils.randomHash())
+                .setReference(1, TestUtils.randomHash())
+                .prepare().fromTailToHead();
+    }
+
+    private static class Recorder implements FragmentScanner.Listener {
+        private final List<Transaction[]> classFragments = new ArrayList<>();
+        private final List<Transaction[]> dataFragments = new ArrayList<>();
+
+        @Override
+        public void onClassFragment(Transaction head, Transaction tail) {
+            classFragments.add(new Transaction[]{head, tail});
+        }
+
+        @Override
+        public void onDataFragment(Transaction head, Transaction tail) {
+            dataFragments.add(new Transaction[]{head, tail});
+        }
+    }
+}
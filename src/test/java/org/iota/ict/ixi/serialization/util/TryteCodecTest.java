@@ -0,0 +1,59 @@
+package org.iota.ict.ixi.serialization.util;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.utils.Trytes;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class TryteCodecTest {
+
+    @Test
+    public void numbersMatchTrytes() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            long value = random.nextInt() * (long) random.nextInt(1 << 16);
+            String trytes = TryteCodec.fromLong(value, 13);
+            assertEquals(Trytes.fromNumber(BigInteger.valueOf(value), 13), trytes);
+            assertEquals(value, TryteCodec.toLong(trytes));
+            assertEquals(BigInteger.valueOf(value), Trytes.toNumber(trytes));
+            assertEquals(value, TryteCodec.toLong(TryteCodec.fromLong(value, TryteCodec.tryteLength(value))));
+        }
+        assertEquals(Long.MAX_VALUE, TryteCodec.toLong(TryteCodec.fromLong(Long.MAX_VALUE, 14)));
+        assertEquals(Long.MIN_VALUE, TryteCodec.toLong(TryteCodec.fromLong(Long.MIN_VALUE, TryteCodec.tryteLength(Long.MIN_VALUE))));
+        assertEquals(1, TryteCodec.tryteLength(-13));
+        assertEquals(2, TryteCodec.tryteLength(14));
+        assertThrows(IllegalArgumentException.class, () -> TryteCodec.fromLong(14, 1));
+        assertThrows(ArithmeticException.class, () -> TryteCodec.toLong(TestUtils.random(20) + "M"));
+    }
+
+    @Test
+    public void tritsMatchTrytes() {
+        String trytes = TestUtils.random(27);
+        byte[] trits = new byte[81];
+        assertEquals(81, TryteCodec.toTrits(trytes, trits, 0));
+        assertTrue(Arrays.equals(Trytes.toTrits(trytes), trits));
+        assertThrows(IndexOutOfBoundsException.class, () -> TryteCodec.toTrits(trytes, new byte[80], 0));
+    }
+
+    @Test
+    public void bytesAndText() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        String trytes = TryteCodec.fromBytes(bytes);
+        assertEquals(512, trytes.length());
+        assertTrue(Arrays.equals(bytes, TryteCodec.toBytes(trytes)));
+        assertEquals("Hello IOTA", TryteCodec.toText(Trytes.padRight(TryteCodec.fromText("Hello IOTA"), 40)));
+        //255 is the largest value of 2 trytes encoding a byte
+        assertEquals((byte) 255, TryteCodec.toBytes("LI")[0]);
+        assertThrows(IllegalArgumentException.class, () -> TryteCodec.toBytes("MI"));
+        assertThrows(IllegalArgumentException.class, () -> TryteCodec.toBytes("9Z"));
+    }
+}
@@ -0,0 +1,44 @@
+package org.iota.ict.ixi.serialization.util;
+
+import org.iota.ict.ixi.TestUtils;
+import org.iota.ict.utils.Trytes;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class TryteHashTest {
+
+    @Test
+    public void roundTrip() {
+        for (int i = 0; i < 100; i++) {
+            String trytes = TestUtils.randomHash();
+            TryteHash hash = TryteHash.of(trytes);
+            assertEquals(trytes, hash.toString());
+            assertTrue(hash.matches(trytes));
+        }
+        String allZ = new String(new char[81]).replace('\0', 'Z');
+        assertEquals(allZ, TryteHash.of(allZ).toString());
+        assertEquals(Trytes.NULL_HASH, TryteHash.NULL_HASH.toString());
+    }
+
+    @Test
+    public void equality() {
+        String trytes = TestUtils.randomHash();
+        TryteHash hash = TryteHash.of(trytes);
+        assertEquals(hash, TryteHash.of(trytes));
+        assertEquals(hash.hashCode(), TryteHash.of(trytes).hashCode());
+        assertNotEquals(hash, TryteHash.of(TestUtils.randomHash()));
+        assertFalse(hash.matches(TestUtils.randomHash()));
+    }
+
+    @Test
+    public void rejectInvalidTrytes() {
+        assertFalse(TryteHash.isValid(null));
+        assertFalse(TryteHash.isValid("ABC"));
+        assertFalse(TryteHash.isValid(TestUtils.random(80) + "a"));
+        assertThrows(IllegalArgumentException.class, () -> TryteHash.of("ABC"));
+        assertSame(TryteHash.NULL_HASH, TryteHash.of("ABC", TryteHash.NULL_HASH));
+        assertSame(TryteHash.NULL_HASH, TryteHash.of(null, TryteHash.NULL_HASH));
+    }
+}
@@ -0,0 +1,36 @@
+package org.iota.ict.ixi.serialization.util;
+
+import org.iota.ict.ixi.TestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("WeakerAccess")
+public class TryteViewTest {
+
+    @Test
+    public void viewOverWindow() {
+        String trytes = TestUtils.random(100);
+        TryteView view = TryteView.of(trytes.getBytes(StandardCharsets.US_ASCII), 10, 50);
+        assertEquals(50, view.length());
+        assertEquals(trytes.charAt(10), view.charAt(0));
+        assertEquals(trytes.substring(10, 60), view.toString());
+        assertTrue(view.startsWith(trytes.substring(10, 20)));
+        assertFalse(view.startsWith(trytes.substring(0, 10) + "X"));
+        assertFalse(view.startsWith(trytes));
+        assertTrue(view.contentEquals(trytes.substring(10, 60)));
+        assertFalse(view.contentEquals(trytes.substring(10, 59)));
+
+        TryteView sub = view.subSequence(5, 15);
+        assertEquals(trytes.substring(15, 25), sub.toString());
+        byte[] target = new byte[10];
+        sub.copyTo(target, 0);
+        assertEquals(trytes.substring(15, 25), new String(target, StandardCharsets.US_ASCII));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> view.charAt(50));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.subSequence(40, 51));
+        assertThrows(IndexOutOfBoundsException.class, () -> TryteView.of(new byte[10], 5, 6));
+    }
+}